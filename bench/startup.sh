@@ -0,0 +1,32 @@
+#!/bin/bash
+# startup benchmark: native image vs jar-with-dependencies
+#   mvn package && mvn -Pnative package
+#   bench/startup.sh [source.c] [runs]
+set -e
+cd "$(dirname "$0")/.."
+
+SRC=${1:-writing-a-c-compiler-tests/tests/chapter_9/valid/arguments_in_registers/fibonacci.c}
+RUNS=${2:-20}
+JAR=target/WriteCC-1.0-SNAPSHOT-jar-with-dependencies.jar
+NATIVE=target/writecc
+
+[ -f "$JAR" ] || { echo "missing $JAR, run mvn package"; exit 1; }
+[ -x "$NATIVE" ] || { echo "missing $NATIVE, run mvn -Pnative package"; exit 1; }
+
+# average wall time in ms of running "$@" $RUNS times
+measure() {
+  local start end
+  start=$(date +%s%N)
+  for ((i = 0; i < RUNS; i++)); do
+    "$@" >/dev/null 2>&1
+  done
+  end=$(date +%s%N)
+  echo $(((end - start) / RUNS / 1000000))
+}
+
+printf "%-10s %12s %12s\n" stage "jar(ms)" "native(ms)"
+for stage in --lex --parse --validate --tacky --codegen; do
+  j=$(measure java --add-modules jdk.incubator.vector -Dtest=1 -jar "$JAR" "$stage" "$SRC")
+  n=$(measure "$NATIVE" -Dtest=1 "$stage" "$SRC")
+  printf "%-10s %12s %12s\n" "$stage" "$j" "$n"
+done
@@ -0,0 +1,67 @@
+package cn.deepmax.jfx.lexer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * scalar vs {@link VectorScan} trivia skipping, on indented and commented source
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class LexerBenchmark {
+
+    @Param({"false", "true"})
+    boolean vector;
+
+    @Param({"heap", "direct"})
+    String buffer;
+
+    private ByteBuffer data;
+
+    @Setup
+    public void setup() {
+        String unit = """
+                /*
+                 * a documented function , the comment is longer than the code
+                 * as it is in most real sources
+                 */
+                int f(int a, int b) {
+                        // indentation with spaces
+                        int c = a * b + 3;
+                        if (c > 10) {
+                                return c - 1;   // trailing comment
+                        }
+                        return c;
+                }
+
+                """;
+        byte[] bytes = unit.repeat(8192).getBytes(StandardCharsets.UTF_8);
+        if (buffer.equals("heap")) {
+            data = ByteBuffer.wrap(bytes);
+        } else {
+            data = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+    }
+
+    @Benchmark
+    public int lex() {
+        return new Lexer(data, 0, data.limit(), false, vector).tokenBuffer().size();
+    }
+}
@@ -16,6 +16,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class App {
     static String input =
@@ -54,6 +56,11 @@ public class App {
 
 
     public static void main(String[] args) throws IOException {
+        String socket = System.getProperty("server");
+        if (socket != null && !socket.isBlank()) {
+            new CompileServer(Paths.get(socket)).serve();
+            return;
+        }
         String v = System.getProperty("test");
         if (v == null || v.isBlank()) {
             mainLocal(args);
@@ -65,10 +72,13 @@ public class App {
 
     private static void runTests(String[] args) {
         //for book's tests
-        Args ag = new Args(args);
+        runTests(new Args(args));
+    }
+
+    static void runTests(Args ag) {
         try {
-            String inputSource = Files.readString(Paths.get(ag.path));
-            runTest(ag, ag.param, inputSource, ag.path);
+            Lexer lexer = Lexer.ofFile(Paths.get(ag.path));
+            runTest(ag, ag.param, lexer, ag.path);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -77,42 +87,51 @@ public class App {
     static class Args {
         boolean toC;
         String path;
-        String param;
+        String param = "";
+        final Set<CompileOptions.Optimization> optimizations = EnumSet.noneOf(CompileOptions.Optimization.class);
 
+        /**
+         * [-c] [stage flag] [optimization flags] path, flags in any order
+         */
         Args(String[] args) {
-            int i = 0;
-            if (args[0].equals("-c")) {
-                this.toC = true;
-                i++;
+            for (String arg : args) {
+                if (arg.equals("-c")) {
+                    this.toC = true;
+                } else if (arg.startsWith("-")) {
+                    Set<CompileOptions.Optimization> o = CompileOptions.Optimization.ofFlag(arg);
+                    if (o.isEmpty()) {
+                        this.param = arg;
+                    } else {
+                        this.optimizations.addAll(o);
+                    }
+                } else {
+                    this.path = arg;
+                }
             }
-            this.path = args.length > 1 + i ? args[1 + i] : args[i];
-            this.param = args.length > 1 + i ? args[i] : "";
         }
-    }
-
-    private static void runTest(Args ag, String level, String source, String sourcePath) throws IOException {
-        Lexer lexer = new Lexer(source);
-        Parser p = new Parser(lexer);
-        if ("--lex".equals(level)) return;
-
-        Ast.AstProgram astProgram = p.parseProgram();
-        if ("--parse".equals(level)) return;
 
-        astProgram = p.resolver.resolveProgram(astProgram);
-        TypeChecker typeChecker = new TypeChecker();
-        typeChecker.checkProgram(astProgram);
-        if ("--validate".equals(level)) return;
-
-        IRConverter irConverter = new IRConverter(astProgram, typeChecker);
-        IR.Program irProgram = irConverter.convertToIR();
-        if ("--tacky".equals(level)) return;
+        /**
+         * resolve relative source path against client working directory
+         */
+        Args resolveAgainst(Path workDir) {
+            this.path = workDir.resolve(path).toString();
+            return this;
+        }
+    }
 
-        AssemblyConstruct.Program asmAst = AsmAst.createAsmAst(irProgram, typeChecker);
-        if ("--codegen".equals(level)) return;
-        String asmCode = Emission.codegen(asmAst);
+    /**
+     * -Dparallel=true : lex and parse large sources on the common pool
+     */
+    static final boolean PARALLEL = Boolean.getBoolean("parallel");
 
+    private static void runTest(Args ag, String level, Lexer lexer, String sourcePath) throws IOException {
+        CompileOptions options = CompileOptions.until(CompileOptions.Stage.ofFlag(level))
+                .withParallel(PARALLEL)
+                .withOptimizations(ag.optimizations);
+        CompileResult result = Compiler.run(lexer, options);
+        if (result.assembly() == null) return;
 
-        compileToBinary(ag, sourcePath, asmCode);
+        compileToBinary(ag, sourcePath, result.assembly());
     }
 
     private static void compileToBinary(Args ag, String sourcePath, String asmCode) throws IOException {
@@ -138,24 +157,23 @@ public class App {
         Lexer lexer = new Lexer(input);
         Parser p = new Parser(lexer);
         System.out.println("--------- lexer ----------");
-        System.out.println(p.tokenList);
+        System.out.println(p.tokens);
 
         Ast.AstProgram ast = p.parseProgram();
         System.out.println("--------- parser ---------");
         System.out.println(ast.toString());
         System.out.println("--------- resovle(validate) ---------");
         ast = p.resolver.resolveProgram(ast);
-        TypeChecker typeChecker = new TypeChecker();
-        typeChecker.checkProgram(ast);
+        new TypeChecker(p.context).checkProgram(ast);
         System.out.println(ast.toString());
 
 
-        IRConverter irConverter = new IRConverter(ast, typeChecker);
+        IRConverter irConverter = new IRConverter(ast, p.context);
         IR.Program irProgram = irConverter.convertToIR();
         System.out.println("--------- ir ---------");
         System.out.println(irProgram.toString());
 
-        AssemblyConstruct.Program asmAst = AsmAst.createAsmAst(irProgram, typeChecker);
+        AssemblyConstruct.Program asmAst = AsmAst.createAsmAst(irProgram, p.context);
         System.out.println("--------- asm ast ---------");
         System.out.println(asmAst);
         System.out.printf("-----current variable   -------\n");
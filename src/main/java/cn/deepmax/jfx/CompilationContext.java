@@ -0,0 +1,61 @@
+package cn.deepmax.jfx;
+
+import cn.deepmax.jfx.parse.SymbolTable;
+
+/**
+ * naming counters, symbols and symbol table of one compilation.
+ * every phase of a compile shares one context and nothing is process-wide,
+ * so compiles on one jvm do not interfere and always produce the same names.
+ * a context is used by one compile at a time.
+ */
+public final class CompilationContext {
+
+    /**
+     * loop labels of the resolver, "Loop.2"
+     */
+    private int loopLabelId;
+    /**
+     * labels of the IR, "if_exit_label.5"
+     */
+    private int labelId;
+    /**
+     * resolved variables, then IR temporaries
+     */
+    private final Symbols symbols = new Symbols();
+
+    private final SymbolTable symbolTable = new SymbolTable();
+
+    public int nextLoopLabelId() {
+        return loopLabelId++;
+    }
+
+    /**
+     * take n loop label ids at once, for labels given apart and rebased
+     *
+     * @return the first of them
+     */
+    public int nextLoopLabelIds(int n) {
+        int first = loopLabelId;
+        loopLabelId += n;
+        return first;
+    }
+
+    /**
+     * ids taken so far
+     */
+    public int loopLabelIds() {
+        return loopLabelId;
+    }
+
+    public int nextLabelId() {
+        return labelId++;
+    }
+
+    public Symbols symbols() {
+        return symbols;
+    }
+
+    public SymbolTable symbolTable() {
+        return symbolTable;
+    }
+}
@@ -0,0 +1,40 @@
+package cn.deepmax.jfx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+
+/**
+ * java launcher for {@link CompileServer}, forwards argv and exits with the compile exit code.
+ * it still boots a jvm per file, {@code bin/writecc} speaks the same {@link CompileProtocol} from a shell without one.
+ * <p>
+ * {@code java -Dserver=/tmp/writecc.sock -cp WriteCC.jar cn.deepmax.jfx.CompileClient [-c] [--lex] file.c}
+ */
+public class CompileClient {
+
+    public static void main(String[] args) throws IOException {
+        String socket = System.getProperty("server");
+        if (socket == null || socket.isBlank()) {
+            System.err.println("missing -Dserver=<socket path>");
+            System.exit(2);
+        }
+        CompileProtocol.Response response;
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            var out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            var in = new BufferedInputStream(Channels.newInputStream(channel));
+            String workDir = Paths.get("").toAbsolutePath().toString();
+            CompileProtocol.writeRequest(out, workDir, args);
+            response = CompileProtocol.readResponse(in);
+        }
+        if (!response.message().isEmpty()) {
+            System.err.println(response.message());
+        }
+        System.exit(response.exitCode());
+    }
+}
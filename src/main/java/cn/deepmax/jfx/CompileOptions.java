@@ -0,0 +1,104 @@
+package cn.deepmax.jfx;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * what a {@link Compiler} run produces
+ *
+ * @param stage         last stage to run
+ * @param parallel      lex, parse and analyze large sources on the common pool
+ * @param optimizations TACKY passes to run, none by default
+ */
+public record CompileOptions(Stage stage, boolean parallel, Set<Optimization> optimizations) {
+
+    /**
+     * all stages, up to assembly text
+     */
+    public static final CompileOptions ALL = until(Stage.EMIT);
+
+    public CompileOptions {
+        optimizations = optimizations.isEmpty()
+                ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(optimizations));
+    }
+
+    public static CompileOptions until(Stage stage) {
+        return new CompileOptions(stage, false, Set.of());
+    }
+
+    public CompileOptions withParallel(boolean parallel) {
+        return new CompileOptions(stage, parallel, optimizations);
+    }
+
+    public CompileOptions withOptimizations(Set<Optimization> optimizations) {
+        return new CompileOptions(stage, parallel, optimizations);
+    }
+
+    /**
+     * stages in order, flags are the ones of the book's test driver
+     */
+    public enum Stage {
+        LEX("--lex"),
+        PARSE("--parse"),
+        VALIDATE("--validate"),
+        TACKY("--tacky"),
+        CODEGEN("--codegen"),
+        EMIT("");
+
+        public final String flag;
+
+        Stage(String flag) {
+            this.flag = flag;
+        }
+
+        /**
+         * @return stage of a command line flag, EMIT for anything else
+         */
+        public static Stage ofFlag(String flag) {
+            for (Stage s : values()) {
+                if (s != EMIT && s.flag.equals(flag)) {
+                    return s;
+                }
+            }
+            return EMIT;
+        }
+
+        public boolean reached(Stage last) {
+            return ordinal() <= last.ordinal();
+        }
+    }
+
+    /**
+     * TACKY optimizations, flags are the ones of the book's test driver, "--optimize" turns on all of them
+     */
+    public enum Optimization {
+        FOLD_CONSTANTS("--fold-constants"),
+        ELIMINATE_UNREACHABLE_CODE("--eliminate-unreachable-code"),
+        PROPAGATE_COPIES("--propagate-copies"),
+        ELIMINATE_DEAD_STORES("--eliminate-dead-stores");
+
+        public static final String ALL_FLAG = "--optimize";
+
+        public final String flag;
+
+        Optimization(String flag) {
+            this.flag = flag;
+        }
+
+        /**
+         * @return optimizations of a command line flag, empty if it is not an optimization flag
+         */
+        public static Set<Optimization> ofFlag(String flag) {
+            if (ALL_FLAG.equals(flag)) {
+                return EnumSet.allOf(Optimization.class);
+            }
+            for (Optimization o : values()) {
+                if (o.flag.equals(flag)) {
+                    return EnumSet.of(o);
+                }
+            }
+            return EnumSet.noneOf(Optimization.class);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package cn.deepmax.jfx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * wire format between a client ({@code bin/writecc} or {@link CompileClient}) and {@link CompileServer},
+ * utf-8 lines so a shell can speak it through socat or nc
+ * <pre>
+ * request  : workDir \n argc \n arg0 \n ... argN \n
+ * response : exitCode \n message (until the server closes)
+ * </pre>
+ * lines are at most {@link #MAX_LINE} bytes and a request carries at most {@link #MAX_ARGS} args,
+ * anything longer is rejected before it is buffered.
+ */
+class CompileProtocol {
+
+    static final int MAX_LINE = 64 * 1024;
+    static final int MAX_ARGS = 256;
+
+    private CompileProtocol() {
+    }
+
+    static void writeLine(OutputStream out, String s) throws IOException {
+        if (s.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("line break in " + s);
+        }
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    /**
+     * @return the line without its line break
+     * @throws IOException on end of stream or a line over {@link #MAX_LINE} bytes
+     */
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("unexpected end of request");
+            }
+            if (line.size() == MAX_LINE) {
+                throw new IOException("line longer than " + MAX_LINE + " bytes");
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    static int readInt(InputStream in, int min, int max) throws IOException {
+        String line = readLine(in);
+        int v;
+        try {
+            v = Integer.parseInt(line.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("not a number: " + line);
+        }
+        if (v < min || v > max) {
+            throw new IOException(v + " out of [" + min + ", " + max + "]");
+        }
+        return v;
+    }
+
+    static void writeRequest(OutputStream out, String workDir, String[] args) throws IOException {
+        writeLine(out, workDir);
+        writeLine(out, Integer.toString(args.length));
+        for (String arg : args) {
+            writeLine(out, arg);
+        }
+        out.flush();
+    }
+
+    static Request readRequest(InputStream in) throws IOException {
+        String workDir = readLine(in);
+        int argc = readInt(in, 0, MAX_ARGS);
+        String[] args = new String[argc];
+        for (int i = 0; i < argc; i++) {
+            args[i] = readLine(in);
+        }
+        return new Request(workDir, args);
+    }
+
+    static void writeResponse(OutputStream out, int exitCode, String message) throws IOException {
+        writeLine(out, Integer.toString(exitCode));
+        out.write(message.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    static Response readResponse(InputStream in) throws IOException {
+        int exitCode = readInt(in, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        return new Response(exitCode, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    record Request(String workDir, String[] args) {
+    }
+
+    record Response(int exitCode, String message) {
+    }
+
+}
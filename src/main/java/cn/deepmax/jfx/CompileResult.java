@@ -0,0 +1,22 @@
+package cn.deepmax.jfx;
+
+import cn.deepmax.jfx.asm.AssemblyConstruct;
+import cn.deepmax.jfx.ir.IR;
+import cn.deepmax.jfx.lexer.TokenBuffer;
+import cn.deepmax.jfx.parse.Annotations;
+import cn.deepmax.jfx.parse.Ast;
+import cn.deepmax.jfx.utils.Nullable;
+
+/**
+ * output of every stage that ran, stages after {@link CompileOptions#stage()} are null
+ *
+ * @param ast         as parsed, the resolver does not rebuild it
+ * @param annotations unique names and loop labels of ast after VALIDATE
+ */
+public record CompileResult(TokenBuffer tokens,
+                            @Nullable Ast.AstProgram ast,
+                            @Nullable Annotations annotations,
+                            @Nullable IR.Program ir,
+                            @Nullable AssemblyConstruct.Program asm,
+                            @Nullable String assembly) {
+}
@@ -0,0 +1,99 @@
+package cn.deepmax.jfx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * long-running compile server, so compiles run on a warm jvm instead of paying jvm startup per file.
+ * <p>
+ * start with {@code java -Dserver=/tmp/writecc.sock -jar WriteCC.jar},
+ * then compile with {@code bin/writecc} (or {@link CompileClient}) using the same socket path.
+ * every request runs on its own virtual thread with its own {@link CompilationContext}.
+ */
+public class CompileServer implements Closeable {
+
+    private final Path socketPath;
+    private volatile ServerSocketChannel server;
+
+    public CompileServer(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * accept compiles until {@link #close()}
+     */
+    public void serve() throws IOException {
+        Files.deleteIfExists(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            this.server = server;
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Runtime.getRuntime().addShutdownHook(new Thread(this::removeSocketFile));
+            System.out.println("compile server listening on " + socketPath);
+            try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+                while (true) {
+                    SocketChannel channel = server.accept();
+                    workers.submit(() -> handleAndClose(channel));
+                }
+            } catch (ClosedChannelException e) {
+                //closed, stop accepting
+            }
+        } finally {
+            removeSocketFile();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ServerSocketChannel s = server;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    private void handleAndClose(SocketChannel channel) {
+        try (channel) {
+            handle(channel);
+        } catch (IOException e) {
+            System.err.println("compile request failed: " + e.getMessage());
+        }
+    }
+
+    private void handle(SocketChannel channel) throws IOException {
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+        CompileProtocol.Request request = CompileProtocol.readRequest(in);
+        int exitCode = 0;
+        String message = "";
+        try {
+            App.Args args = new App.Args(request.args()).resolveAgainst(Paths.get(request.workDir()));
+            App.runTests(args);
+        } catch (Exception | StackOverflowError e) {
+            exitCode = 1;
+            message = e.toString();
+        }
+        CompileProtocol.writeResponse(out, exitCode, message);
+    }
+
+    private void removeSocketFile() {
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            //ignore on shutdown
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package cn.deepmax.jfx;
+
+import cn.deepmax.jfx.asm.AsmAst;
+import cn.deepmax.jfx.asm.AssemblyConstruct;
+import cn.deepmax.jfx.emit.Emission;
+import cn.deepmax.jfx.ir.CompactIR;
+import cn.deepmax.jfx.ir.IR;
+import cn.deepmax.jfx.ir.IRConverter;
+import cn.deepmax.jfx.ir.Optimizer;
+import cn.deepmax.jfx.lexer.Lexer;
+import cn.deepmax.jfx.lexer.TokenBuffer;
+import cn.deepmax.jfx.parse.Annotations;
+import cn.deepmax.jfx.parse.Ast;
+import cn.deepmax.jfx.parse.Parser;
+import cn.deepmax.jfx.parse.SemanticAnalyzer;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * in-memory compiler, no file is read or written and gcc is not called.
+ * <pre>{@code
+ * CompileResult r = Compiler.virtualThreads().compile(source, CompileOptions.ALL).join();
+ * }</pre>
+ * every compile has its own {@link CompilationContext}, so any number of them can run at the same time.
+ * lexer, parse and semantic errors complete the future exceptionally.
+ */
+public final class Compiler {
+
+    private static final Compiler VIRTUAL_THREADS = new Compiler(Executors.newVirtualThreadPerTaskExecutor());
+
+    private final Executor executor;
+
+    public Compiler(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * shared compiler running each compile on a new virtual thread
+     */
+    public static Compiler virtualThreads() {
+        return VIRTUAL_THREADS;
+    }
+
+    public CompletableFuture<CompileResult> compile(String source, CompileOptions options) {
+        return CompletableFuture.supplyAsync(() -> compileNow(source, options), executor);
+    }
+
+    /**
+     * compile on the calling thread
+     */
+    public static CompileResult compileNow(String source, CompileOptions options) {
+        return run(new Lexer(source), options);
+    }
+
+    static CompileResult run(Lexer lexer, CompileOptions options) {
+        CompileOptions.Stage last = options.stage();
+        CompilationContext context = new CompilationContext();
+        TokenBuffer tokens = options.parallel() ? lexer.tokenBuffer(ForkJoinPool.commonPool()) : lexer.tokenBuffer();
+        if (!CompileOptions.Stage.PARSE.reached(last)) {
+            return new CompileResult(tokens, null, null, null, null, null);
+        }
+
+        Parser p = new Parser(tokens, context);
+        Ast.AstProgram ast = options.parallel() ? p.parseProgram(ForkJoinPool.commonPool()) : p.parseProgram();
+        if (!CompileOptions.Stage.VALIDATE.reached(last)) {
+            return new CompileResult(tokens, ast, null, null, null, null);
+        }
+
+        SemanticAnalyzer analyzer = new SemanticAnalyzer(context);
+        Annotations annotations = options.parallel() ? analyzer.analyzeProgram(ast, ForkJoinPool.commonPool()) : analyzer.analyzeProgram(ast);
+        if (!CompileOptions.Stage.TACKY.reached(last)) {
+            return new CompileResult(tokens, ast, annotations, null, null, null);
+        }
+
+        IR.Program ir = new IRConverter(ast, context, annotations).convertToIR();
+        List<CompactIR> functions = CompactIR.encode(ir);
+        if (!options.optimizations().isEmpty()) {
+            Optimizer.optimize(functions, options.optimizations());
+            ir = CompactIR.decode(functions);
+        }
+        if (!CompileOptions.Stage.CODEGEN.reached(last)) {
+            return new CompileResult(tokens, ast, annotations, ir, null, null);
+        }
+
+        AssemblyConstruct.Program asm = AsmAst.createAsmAst(functions, context);
+        if (!CompileOptions.Stage.EMIT.reached(last)) {
+            return new CompileResult(tokens, ast, annotations, ir, asm, null);
+        }
+        return new CompileResult(tokens, ast, annotations, ir, asm, Emission.codegen(asm));
+    }
+}
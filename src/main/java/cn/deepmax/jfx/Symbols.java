@@ -0,0 +1,51 @@
+package cn.deepmax.jfx;
+
+import java.util.Arrays;
+
+/**
+ * dense int ids of resolved variables and IR temporaries, owned by {@link CompilationContext}.
+ * phases pass the id around and index arrays with it, the name "a.3" is only built for printing.
+ */
+public final class Symbols {
+
+    private String[] rawNames = new String[64];
+    private int size;
+
+    /**
+     * @param rawName name in the source, "var" for temporaries
+     * @return new id, one more than the last one
+     */
+    public int add(String rawName) {
+        if (size == rawNames.length) {
+            rawNames = Arrays.copyOf(rawNames, size * 2);
+        }
+        rawNames[size] = rawName;
+        return size++;
+    }
+
+    /**
+     * append all symbols of other, its id i becomes {@code size() + i}
+     */
+    public void addAll(Symbols other) {
+        if (size + other.size > rawNames.length) {
+            rawNames = Arrays.copyOf(rawNames, Math.max(size + other.size, size * 2));
+        }
+        System.arraycopy(other.rawNames, 0, rawNames, size, other.size);
+        size += other.size;
+    }
+
+    public String rawName(int id) {
+        return rawNames[id];
+    }
+
+    /**
+     * unique name, "a.3"
+     */
+    public String name(int id) {
+        return rawNames[id] + "." + id;
+    }
+
+    public int size() {
+        return size;
+    }
+}
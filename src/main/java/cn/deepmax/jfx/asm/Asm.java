@@ -1,7 +1,6 @@
 package cn.deepmax.jfx.asm;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 
 public class Asm {
@@ -207,37 +206,74 @@ public class Asm {
     public record Stack(int pos) implements AssemblyConstruct.Operand {
     }
 
+    /**
+     * stack slots of the symbols of one function, in order of first use.
+     * reused for all functions, a slot belongs to the function it was given in.
+     */
     public static class PseudoContext {
 
-        private final AtomicLong seq = new AtomicLong(0);
-        private final Map<String, String> mapping = new HashMap<>();
+        private int[] slotOf;
+        private int[] functionOf;
+        private int function;
+        private int count;
+        /**
+         * one Pseudo per slot, shared by all functions
+         */
+        private Pseudo[] pseudos = new Pseudo[16];
+
+        public PseudoContext(int symbols) {
+            this.slotOf = new int[symbols];
+            this.functionOf = new int[symbols];
+        }
+
+        /**
+         * start the next function, slots count from 0 again
+         */
+        public void reset() {
+            function++;
+            count = 0;
+        }
 
-        public Pseudo make(String varName) {
-            String old = mapping.get(varName);
-            if (old != null) {
-                return new Pseudo(old);
+        public Pseudo make(int symbol) {
+            if (symbol >= slotOf.length) {
+                int len = Math.max(symbol + 1, slotOf.length * 2);
+                slotOf = Arrays.copyOf(slotOf, len);
+                functionOf = Arrays.copyOf(functionOf, len);
             }
-            long id = seq.getAndIncrement();
-            String pName = varName + "." + id;
-            mapping.put(varName, pName);
-            return new Pseudo(pName);
+            if (functionOf[symbol] != function) {
+                functionOf[symbol] = function;
+                slotOf[symbol] = count++;
+            }
+            int slot = slotOf[symbol];
+            if (slot >= pseudos.length) {
+                pseudos = Arrays.copyOf(pseudos, Math.max(slot + 1, pseudos.length * 2));
+            }
+            Pseudo p = pseudos[slot];
+            if (p == null) {
+                p = new Pseudo(slot);
+                pseudos[slot] = p;
+            }
+            return p;
         }
 
         public long getPseudoCount() {
-            return seq.get();
+            return count;
         }
 
     }
 
-    public record Pseudo(String id) implements AssemblyConstruct.Operand {
+    /**
+     * @param slot 4 bytes each, below rbp
+     */
+    public record Pseudo(int slot) implements AssemblyConstruct.Operand {
 
         public int getOffset() {
-            String[] s = id.split("\\.");
-            return Integer.parseInt(s[s.length - 1]) * 4 + 4;
+            return slot * 4 + 4;
         }
     }
 
     public record Imm(int v) implements AssemblyConstruct.Operand {
+        public static final Imm ZERO = new Imm(0);
     }
 
     public record Register(AssemblyConstruct.Reg reg) implements AssemblyConstruct.Operand {
@@ -1,18 +1,21 @@
 package cn.deepmax.jfx.asm;
 
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.ir.CompactIR;
 import cn.deepmax.jfx.ir.IR;
 import cn.deepmax.jfx.ir.IRType;
-import cn.deepmax.jfx.parse.Identifiers;
-import cn.deepmax.jfx.parse.TypeChecker;
+import cn.deepmax.jfx.utils.IntMap;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class AsmAst {
 
-    private IR.Program program;
-    private final TypeChecker typeChecker;
-    private Asm.PseudoContext pseudoContext;
+    private final Asm.PseudoContext pseudoContext;
+    /**
+     * one Imm per value of a function, with the Pseudos of pseudoContext equal operands are the same instance
+     */
+    private final IntMap<Asm.Imm> imms = new IntMap<>();
 
     final static Asm.Register[] PARAM = new Asm.Register[]{
             Asm.Register.DI,
@@ -23,45 +26,48 @@ public class AsmAst {
             Asm.Register.R9D
     };
 
-    private AsmAst(IR.Program program, TypeChecker typeChecker) {
-        this.program = program;
-        this.typeChecker = typeChecker;
+    private AsmAst(CompilationContext context) {
+        this.pseudoContext = new Asm.PseudoContext(context.symbols().size());
     }
 
-    public static AssemblyConstruct.Program createAsmAst(IR.Program program, TypeChecker typeChecker) {
-        return new AsmAst(program, typeChecker).transform();
+    public static AssemblyConstruct.Program createAsmAst(IR.Program program, CompilationContext context) {
+        return createAsmAst(CompactIR.encode(program), context);
     }
 
-    public AssemblyConstruct.Program transform() {
-        var pg = (IRType.Program) this.program;
-        List<AssemblyConstruct.FunctionDef> list = pg.functionDef().stream()
-                .map(this::transFunc)
-                .toList();
+    /**
+     * lower packed functions, the record form is packed first by {@link #createAsmAst(IR.Program, CompilationContext)}
+     */
+    public static AssemblyConstruct.Program createAsmAst(List<CompactIR> functions, CompilationContext context) {
+        AsmAst asmAst = new AsmAst(context);
+        List<AssemblyConstruct.FunctionDef> list = new ArrayList<>(functions.size());
+        for (CompactIR f : functions) {
+            list.add(asmAst.transFunc(f));
+        }
         return new Asm.AsmProgram(list);
     }
 
-    private AssemblyConstruct.FunctionDef transFunc(IR.FunctionDef functionDef) {
-        this.pseudoContext = new Asm.PseudoContext();
-        var fn = (IRType.FunctionDef) functionDef;
+    private AssemblyConstruct.FunctionDef transFunc(CompactIR fn) {
+        this.pseudoContext.reset();
+        this.imms.clear();
         List<AssemblyConstruct.Instruction> allIns = new ArrayList<>();
         allIns.add(null); //for AllocateStack
-        var params = ((IRType.FunctionDef) functionDef).params();
+        int[] params = fn.params();
 
         //params copy
 
-        var paramSize = params.size();
+        var paramSize = params.length;
         for (int i = 0; i < paramSize && i < 6; i++) {
-            allIns.add(new Asm.Mov(PARAM[i], pseudoContext.make(params.get(i))));
+            allIns.add(new Asm.Mov(PARAM[i], pseudoContext.make(params[i])));
         }
         for (int i = 6; i < paramSize; i++) {
             //copy on stack
             int offset = 16 + (i - 6) * 8;
-            allIns.addAll(Asm.Mov.makeMove(new Asm.Stack(offset), pseudoContext.make(params.get(i))));
+            allIns.addAll(Asm.Mov.makeMove(new Asm.Stack(offset), pseudoContext.make(params[i])));
         }
-        transInstruction(fn.body(), allIns);
+        transInstruction(fn, allIns);
         long varNumber = this.pseudoContext.getPseudoCount();
         allIns.set(0, new Asm.AllocateStack(get16AlignedStack(varNumber)));
-        Asm.Function function = new Asm.Function(fn.identifier(), paramSize, 0, varNumber, allIns);
+        Asm.Function function = new Asm.Function(fn.name(), paramSize, 0, varNumber, allIns);
         return function;
     }
 
@@ -70,89 +76,93 @@ public class AsmAst {
         return (int) value * 16;
     }
 
-    private void transInstruction(List<IR.Instruction> body, List<AssemblyConstruct.Instruction> list) {
-        for (IR.Instruction ir : body) {
-            switch (ir) {
-                case IRType.Return ret -> {
-                    list.addAll(Asm.Mov.makeMove(transOperand(ret.value()), Asm.Register.AX));
+    private void transInstruction(CompactIR fn, List<AssemblyConstruct.Instruction> list) {
+        for (int i = 0; i < fn.size(); i++) {
+            switch (fn.opcode(i)) {
+                case CompactIR.RETURN -> {
+                    list.addAll(Asm.Mov.makeMove(transOperand(fn.operand(i, 0)), Asm.Register.AX));
                     list.add(new Asm.Ret());
                 }
-                case IRType.Unary s -> {
-                    if (s.op() == IRType.UnaryOp.Not) {
-                        list.addAll(Asm.Cmp.make(new Asm.Imm(0), transOperand(s.src())));
-                        AssemblyConstruct.Operand dest = transOperand(s.dst());
-                        list.addAll(Asm.Mov.makeMove(new Asm.Imm(0), dest));
+                case CompactIR.UNARY -> {
+                    long src = fn.operand(i, 0);
+                    long dst = fn.operand(i, 1);
+                    if (fn.unaryOp(i) == IRType.UnaryOp.Not) {
+                        list.addAll(Asm.Cmp.make(Asm.Imm.ZERO, transOperand(src)));
+                        AssemblyConstruct.Operand dest = transOperand(dst);
+                        list.addAll(Asm.Mov.makeMove(Asm.Imm.ZERO, dest));
                         list.add(new Asm.SetCC(Asm.CondiCodeValues.E, dest));
                     } else {
-                        list.addAll(Asm.Mov.makeMove(transOperand(s.src()), transOperand(s.dst())));
-                        list.add(new Asm.Unary(convertUnaryOp(s.op()), transOperand(s.dst())));
+                        list.addAll(Asm.Mov.makeMove(transOperand(src), transOperand(dst)));
+                        list.add(new Asm.Unary(convertUnaryOp(fn.unaryOp(i)), transOperand(dst)));
                     }
                 }
-                case IRType.Binary b -> {
-                    IR.BinaryOperator op = b.op();
+                case CompactIR.BINARY -> {
+                    IRType.BinaryOp op = fn.binaryOp(i);
+                    long src1 = fn.operand(i, 0);
+                    long src2 = fn.operand(i, 1);
+                    long dst = fn.operand(i, 2);
                     if (op == IRType.BinaryOp.Divide) {
-                        list.addAll(Asm.Mov.makeMove(transOperand(b.src1()), Asm.Register.AX));
+                        list.addAll(Asm.Mov.makeMove(transOperand(src1), Asm.Register.AX));
                         list.add(new Asm.Cdq());
-                        list.addAll(Asm.Idiv.make(transOperand(b.src2())));
-                        list.addAll(Asm.Mov.makeMove(Asm.Register.AX, transOperand(b.dst())));
+                        list.addAll(Asm.Idiv.make(transOperand(src2)));
+                        list.addAll(Asm.Mov.makeMove(Asm.Register.AX, transOperand(dst)));
                     } else if (op == IRType.BinaryOp.Remainder) {
-                        list.addAll(Asm.Mov.makeMove(transOperand(b.src1()), Asm.Register.AX));
+                        list.addAll(Asm.Mov.makeMove(transOperand(src1), Asm.Register.AX));
                         list.add(new Asm.Cdq());
-                        list.addAll(Asm.Idiv.make(transOperand(b.src2())));
-                        list.addAll(Asm.Mov.makeMove(Asm.Register.DX, transOperand(b.dst())));
+                        list.addAll(Asm.Idiv.make(transOperand(src2)));
+                        list.addAll(Asm.Mov.makeMove(Asm.Register.DX, transOperand(dst)));
                     } else if (op == IRType.BinaryOp.Add || op == IRType.BinaryOp.Subtract || op == IRType.BinaryOp.Multiply) {
-                        list.addAll(Asm.Mov.makeMove(transOperand(b.src1()), transOperand(b.dst())));
+                        list.addAll(Asm.Mov.makeMove(transOperand(src1), transOperand(dst)));
                         list.addAll(Asm.Binary.make(
                                         convertBinaryOp(op),
-                                        transOperand(b.src2()),
-                                        transOperand(b.dst())
+                                        transOperand(src2),
+                                        transOperand(dst)
                                 )
                         );
 
-                    } else if (op instanceof IRType.BinaryOp opp && opp.isLogic()) {
-                        list.addAll(Asm.Cmp.make(transOperand(b.src2()), transOperand(b.src1())));
-                        AssemblyConstruct.Operand dest = transOperand(b.dst());
-                        list.addAll(Asm.Mov.makeMove(new Asm.Imm(0), dest));
-                        list.add(new Asm.SetCC(convertCondCode(b.op()), dest));
+                    } else if (op.isLogic()) {
+                        list.addAll(Asm.Cmp.make(transOperand(src2), transOperand(src1)));
+                        AssemblyConstruct.Operand dest = transOperand(dst);
+                        list.addAll(Asm.Mov.makeMove(Asm.Imm.ZERO, dest));
+                        list.add(new Asm.SetCC(convertCondCode(op), dest));
                     } else {
-                        throw new UnsupportedOperationException("invalid op " + b.op());
+                        throw new UnsupportedOperationException("invalid op " + op);
                     }
                 }
-                case IRType.Jump jp -> {
-                    list.add(new Asm.Jmp(jp.targetIdentifier()));
+                case CompactIR.JUMP -> {
+                    list.add(new Asm.Jmp(fn.labelName(fn.label(i))));
                 }
-                case IRType.JumpIfZero jp -> {
-                    list.addAll(Asm.Cmp.make(new Asm.Imm(0), transOperand(jp.condition())));
-                    list.add(new Asm.JmpCC(Asm.CondiCodeValues.E, jp.target()));
+                case CompactIR.JUMP_IF_ZERO -> {
+                    list.addAll(Asm.Cmp.make(Asm.Imm.ZERO, transOperand(fn.operand(i, 0))));
+                    list.add(new Asm.JmpCC(Asm.CondiCodeValues.E, fn.labelName(fn.label(i))));
                 }
-                case IRType.JumpIfNotZero jp -> {
-                    list.addAll(Asm.Cmp.make(new Asm.Imm(0), transOperand(jp.condition())));
-                    list.add(new Asm.JmpCC(Asm.CondiCodeValues.NE, jp.target()));
+                case CompactIR.JUMP_IF_NOT_ZERO -> {
+                    list.addAll(Asm.Cmp.make(Asm.Imm.ZERO, transOperand(fn.operand(i, 0))));
+                    list.add(new Asm.JmpCC(Asm.CondiCodeValues.NE, fn.labelName(fn.label(i))));
                 }
-                case IRType.Label label -> {
-                    list.add(new Asm.Label(label.identifier()));
+                case CompactIR.LABEL -> {
+                    list.add(new Asm.Label(fn.labelName(fn.label(i))));
                 }
-                case IRType.Copy copy -> {
+                case CompactIR.COPY -> {
                     list.addAll(Asm.Mov.makeMove(
-                            transOperand(copy.src()),
-                            transOperand(copy.dst())
+                            transOperand(fn.operand(i, 0)),
+                            transOperand(fn.operand(i, 1))
                     ));
                 }
-                case IRType.FunCall call -> {
-                    int paramSize = call.args().size();
-                    int stackPadding = call.stackArgCount() % 2 != 0 ? 8 : 0;
+                case CompactIR.CALL -> {
+                    int paramSize = fn.argCount(i);
+                    int stackArgCount = Math.max(0, paramSize - 6);
+                    int stackPadding = stackArgCount % 2 != 0 ? 8 : 0;
                     if (stackPadding != 0) {
                         list.add(new Asm.AllocateStack(stackPadding)); //stackPadding
                     }
-                    for (int i = 0; i < paramSize && i < 6; i++) {
-                        IR.Val val = call.args().get(i);
-                        var from = transOperand(val);
-                        var to = PARAM[i];
+                    for (int k = 0; k < paramSize && k < 6; k++) {
+                        var from = transOperand(fn.arg(i, k));
+                        var to = PARAM[k];
                         list.addAll(Asm.Mov.makeMove(from, to));
                     }
-                    for (int i = paramSize - 1; i >= 6; i--) {
-                        IR.Val val = call.args().get(i);
-                        var from = transOperand(val);
+                    for (int k = paramSize - 1; k >= 6; k--) {
+                        var from = transOperand(fn.arg(i, k));
                         if (from instanceof Asm.Register || from instanceof Asm.Imm) {
                             list.add(new Asm.Push(from));
                         } else {
@@ -160,16 +170,18 @@ public class AsmAst {
                             list.add(new Asm.Push(Asm.Register.AX));
                         }
                     }
-                    list.add(new Asm.Call(call.functionName()));
+                    list.add(new Asm.Call(fn.callee(i)));
                     //adjust stack pointer
-                    int bytesToRemove = 8 * call.stackArgCount() + stackPadding;
+                    int bytesToRemove = 8 * stackArgCount + stackPadding;
                     if (bytesToRemove != 0) {
                         list.add(new Asm.DeallocateStack(bytesToRemove));
                     }
-                    var result = transOperand(call.dst());
+                    var result = transOperand(fn.callDst(i));
                     list.add(new Asm.Mov(Asm.Register.AX, result));
                 }
-                default -> throw new UnsupportedOperationException(body.toString());
+                case CompactIR.NOP -> {
+                }
+                default -> throw new UnsupportedOperationException("invalid opcode " + fn.opcode(i));
             }
         }
     }
@@ -203,11 +215,9 @@ public class AsmAst {
         };
     }
 
-    private AssemblyConstruct.Operand transOperand(IR.Val exp) {
-        return switch (exp) {
-            case IRType.Constant c -> new Asm.Imm(c.v());
-            case IRType.Var v -> this.pseudoContext.make(v.identifier());
-            default -> throw new UnsupportedOperationException(exp.toString());
-        };
+    private AssemblyConstruct.Operand transOperand(long operand) {
+        return CompactIR.isVar(operand)
+                ? this.pseudoContext.make(CompactIR.symbol(operand))
+                : imms.computeIfAbsent(CompactIR.constant(operand), Asm.Imm::new);
     }
 }
@@ -0,0 +1,402 @@
+package cn.deepmax.jfx.ir;
+
+import cn.deepmax.jfx.utils.IntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TACKY of one function packed in arrays, instruction i is {@code code[i * 4 .. i * 4 + 3]}:
+ * <pre>
+ * word 0   opcode | operator ordinal << 8 | label id or callee index << 32
+ * word 1-3 operands, see {@link #ofVar} and {@link #ofConstant}. a call keeps its args in the arg pool:
+ *          word 1 first arg, word 2 arg count, word 3 dst
+ * </pre>
+ * label ids index {@link #labelName}, names are kept only for emission.
+ * passes rewrite instructions in place and turn removed ones into {@link #NOP}, see {@link #compact()}.
+ */
+public final class CompactIR {
+
+    public static final int RETURN = 0;
+    public static final int UNARY = 1;
+    public static final int BINARY = 2;
+    public static final int COPY = 3;
+    public static final int JUMP = 4;
+    public static final int JUMP_IF_ZERO = 5;
+    public static final int JUMP_IF_NOT_ZERO = 6;
+    public static final int LABEL = 7;
+    public static final int CALL = 8;
+    public static final int NOP = 9;
+
+    private static final int STRIDE = 4;
+    private static final IRType.UnaryOp[] UNARY_OPS = IRType.UnaryOp.values();
+    private static final IRType.BinaryOp[] BINARY_OPS = IRType.BinaryOp.values();
+
+    private final String name;
+    private final int[] params;
+    private long[] code = new long[STRIDE * 16];
+    private int size;
+    private long[] args = new long[8];
+    private int argSize;
+    private final List<String> labels = new ArrayList<>();
+    private final Map<String, Integer> labelIds = new HashMap<>();
+    private final List<String> callees = new ArrayList<>();
+    /**
+     * one Var per symbol and one Constant per value over all decodes of the function
+     */
+    private final IntMap<IRType.Var> decodedVars = new IntMap<>();
+    private final IntMap<IRType.Constant> decodedConstants = new IntMap<>();
+
+    /**
+     * @param params symbols of the params
+     */
+    public CompactIR(String name, int[] params) {
+        this.name = name;
+        this.params = params;
+    }
+
+    public static long ofVar(int symbol) {
+        return (long) symbol << 1 | 1;
+    }
+
+    public static long ofConstant(int value) {
+        return (long) value << 1;
+    }
+
+    public static boolean isVar(long operand) {
+        return (operand & 1) != 0;
+    }
+
+    public static int symbol(long operand) {
+        return (int) (operand >> 1);
+    }
+
+    public static int constant(long operand) {
+        return (int) (operand >> 1);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int[] params() {
+        return params;
+    }
+
+    /**
+     * number of instructions, NOPs included
+     */
+    public int size() {
+        return size;
+    }
+
+    public int opcode(int i) {
+        return (int) (code[i * STRIDE] & 0xff);
+    }
+
+    public IRType.UnaryOp unaryOp(int i) {
+        return UNARY_OPS[operatorOf(i)];
+    }
+
+    public IRType.BinaryOp binaryOp(int i) {
+        return BINARY_OPS[operatorOf(i)];
+    }
+
+    private int operatorOf(int i) {
+        return (int) (code[i * STRIDE] >>> 8 & 0xff);
+    }
+
+    /**
+     * label id of a jump or label
+     */
+    public int label(int i) {
+        return (int) (code[i * STRIDE] >>> 32);
+    }
+
+    /**
+     * @param k 0 to 2
+     */
+    public long operand(int i, int k) {
+        return code[i * STRIDE + 1 + k];
+    }
+
+    public void setOperand(int i, int k, long operand) {
+        code[i * STRIDE + 1 + k] = operand;
+    }
+
+    public String callee(int i) {
+        return callees.get(label(i));
+    }
+
+    public int argCount(int i) {
+        return (int) operand(i, 1);
+    }
+
+    public long arg(int i, int k) {
+        return args[(int) operand(i, 0) + k];
+    }
+
+    public void setArg(int i, int k, long operand) {
+        args[(int) operand(i, 0) + k] = operand;
+    }
+
+    /**
+     * dst of a call
+     */
+    public long callDst(int i) {
+        return operand(i, 2);
+    }
+
+    /**
+     * whether instruction i writes a var, see {@link #dst}
+     */
+    public boolean hasDst(int i) {
+        int opcode = opcode(i);
+        return opcode == UNARY || opcode == BINARY || opcode == COPY || opcode == CALL;
+    }
+
+    public long dst(int i) {
+        return switch (opcode(i)) {
+            case UNARY, COPY -> operand(i, 1);
+            case BINARY, CALL -> operand(i, 2);
+            default -> throw new IllegalStateException("no dst at " + i);
+        };
+    }
+
+    /**
+     * number of operands instruction i reads, args of a call included
+     */
+    public int useCount(int i) {
+        return switch (opcode(i)) {
+            case RETURN, UNARY, COPY, JUMP_IF_ZERO, JUMP_IF_NOT_ZERO -> 1;
+            case BINARY -> 2;
+            case CALL -> argCount(i);
+            default -> 0;
+        };
+    }
+
+    public long use(int i, int k) {
+        return opcode(i) == CALL ? arg(i, k) : operand(i, k);
+    }
+
+    public void setUse(int i, int k, long operand) {
+        if (opcode(i) == CALL) {
+            setArg(i, k, operand);
+        } else {
+            setOperand(i, k, operand);
+        }
+    }
+
+    public int labelCount() {
+        return labels.size();
+    }
+
+    public String labelName(int label) {
+        return labels.get(label);
+    }
+
+    /**
+     * @return id of the label name, a new one on first use
+     */
+    public int labelOf(String labelName) {
+        Integer id = labelIds.get(labelName);
+        if (id == null) {
+            id = labels.size();
+            labels.add(labelName);
+            labelIds.put(labelName, id);
+        }
+        return id;
+    }
+
+    public int addReturn(long value) {
+        return add(RETURN, 0, 0, value, 0, 0);
+    }
+
+    public int addUnary(IRType.UnaryOp op, long src, long dst) {
+        return add(UNARY, op.ordinal(), 0, src, dst, 0);
+    }
+
+    public int addBinary(IRType.BinaryOp op, long src1, long src2, long dst) {
+        return add(BINARY, op.ordinal(), 0, src1, src2, dst);
+    }
+
+    public int addCopy(long src, long dst) {
+        return add(COPY, 0, 0, src, dst, 0);
+    }
+
+    public int addJump(int label) {
+        return add(JUMP, 0, label, 0, 0, 0);
+    }
+
+    public int addJumpIfZero(long condition, int label) {
+        return add(JUMP_IF_ZERO, 0, label, condition, 0, 0);
+    }
+
+    public int addJumpIfNotZero(long condition, int label) {
+        return add(JUMP_IF_NOT_ZERO, 0, label, condition, 0, 0);
+    }
+
+    public int addLabel(int label) {
+        return add(LABEL, 0, label, 0, 0, 0);
+    }
+
+    public int addCall(String callee, long[] callArgs, long dst) {
+        int calleeIndex = callees.size();
+        callees.add(callee);
+        if (argSize + callArgs.length > args.length) {
+            args = Arrays.copyOf(args, Math.max(argSize + callArgs.length, args.length * 2));
+        }
+        int first = argSize;
+        System.arraycopy(callArgs, 0, args, argSize, callArgs.length);
+        argSize += callArgs.length;
+        return add(CALL, 0, calleeIndex, first, callArgs.length, dst);
+    }
+
+    private int add(int opcode, int operator, int label, long a, long b, long c) {
+        if ((size + 1) * STRIDE > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        int at = size * STRIDE;
+        code[at] = opcode | (long) operator << 8 | (long) label << 32;
+        code[at + 1] = a;
+        code[at + 2] = b;
+        code[at + 3] = c;
+        return size++;
+    }
+
+    /**
+     * replace instruction i by a copy, operands of the old one are gone
+     */
+    public void setCopy(int i, long src, long dst) {
+        set(i, COPY, 0, 0, src, dst, 0);
+    }
+
+    public void setJump(int i, int label) {
+        set(i, JUMP, 0, label, 0, 0, 0);
+    }
+
+    public void setNop(int i) {
+        set(i, NOP, 0, 0, 0, 0, 0);
+    }
+
+    private void set(int i, int opcode, int operator, int label, long a, long b, long c) {
+        int at = i * STRIDE;
+        code[at] = opcode | (long) operator << 8 | (long) label << 32;
+        code[at + 1] = a;
+        code[at + 2] = b;
+        code[at + 3] = c;
+    }
+
+    /**
+     * drop NOPs, instruction indexes change
+     */
+    public void compact() {
+        int to = 0;
+        for (int i = 0; i < size; i++) {
+            if (opcode(i) != NOP) {
+                if (to != i) {
+                    System.arraycopy(code, i * STRIDE, code, to * STRIDE, STRIDE);
+                }
+                to++;
+            }
+        }
+        size = to;
+    }
+
+    public static List<CompactIR> encode(IR.Program program) {
+        IRType.Program p = (IRType.Program) program;
+        List<CompactIR> result = new ArrayList<>(p.functionDef().size());
+        for (IR.FunctionDef f : p.functionDef()) {
+            result.add(encode((IRType.FunctionDef) f));
+        }
+        return result;
+    }
+
+    public static CompactIR encode(IRType.FunctionDef f) {
+        int[] params = f.params().stream().mapToInt(Integer::intValue).toArray();
+        CompactIR ir = new CompactIR(f.identifier(), params);
+        for (IR.Instruction instruction : f.body()) {
+            switch (instruction) {
+                case IRType.Return r -> ir.addReturn(encode(r.value()));
+                case IRType.Unary u -> ir.addUnary((IRType.UnaryOp) u.op(), encode(u.src()), encode(u.dst()));
+                case IRType.Binary b ->
+                        ir.addBinary((IRType.BinaryOp) b.op(), encode(b.src1()), encode(b.src2()), encode(b.dst()));
+                case IRType.Copy c -> ir.addCopy(encode(c.src()), encode(c.dst()));
+                case IRType.Jump j -> ir.addJump(ir.labelOf(j.targetIdentifier()));
+                case IRType.JumpIfZero j -> ir.addJumpIfZero(encode(j.condition()), ir.labelOf(j.target()));
+                case IRType.JumpIfNotZero j -> ir.addJumpIfNotZero(encode(j.condition()), ir.labelOf(j.target()));
+                case IRType.Label l -> ir.addLabel(ir.labelOf(l.identifier()));
+                case IRType.FunCall call -> {
+                    long[] callArgs = new long[call.args().size()];
+                    for (int k = 0; k < callArgs.length; k++) {
+                        callArgs[k] = encode(call.args().get(k));
+                    }
+                    ir.addCall(call.functionName(), callArgs, encode(call.dst()));
+                }
+                default -> throw new UnsupportedOperationException(instruction.toString());
+            }
+        }
+        return ir;
+    }
+
+    private static long encode(IR.Val val) {
+        return switch (val) {
+            case IRType.Var v -> ofVar(v.symbol());
+            case IRType.Constant c -> ofConstant(c.v());
+            default -> throw new UnsupportedOperationException(val.toString());
+        };
+    }
+
+    public static IRType.Program decode(List<CompactIR> functions) {
+        List<IR.FunctionDef> list = new ArrayList<>(functions.size());
+        for (CompactIR f : functions) {
+            list.add(f.decode());
+        }
+        return new IRType.Program(list);
+    }
+
+    public IRType.FunctionDef decode() {
+        List<IR.Instruction> body = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            decode(i, body);
+        }
+        List<Integer> paramList = Arrays.stream(params).boxed().toList();
+        return new IRType.FunctionDef(name, paramList, body);
+    }
+
+    /**
+     * append instruction i to body, nothing for a NOP
+     */
+    void decode(int i, List<IR.Instruction> body) {
+        switch (opcode(i)) {
+            case RETURN -> body.add(new IRType.Return(decode(operand(i, 0))));
+            case UNARY -> body.add(new IRType.Unary(unaryOp(i), decode(operand(i, 0)), decode(operand(i, 1))));
+            case BINARY -> body.add(new IRType.Binary(binaryOp(i),
+                    decode(operand(i, 0)), decode(operand(i, 1)), decode(operand(i, 2))));
+            case COPY -> body.add(new IRType.Copy(decode(operand(i, 0)), decode(operand(i, 1))));
+            case JUMP -> body.add(new IRType.Jump(labelName(label(i))));
+            case JUMP_IF_ZERO -> body.add(new IRType.JumpIfZero(decode(operand(i, 0)), labelName(label(i))));
+            case JUMP_IF_NOT_ZERO -> body.add(new IRType.JumpIfNotZero(decode(operand(i, 0)), labelName(label(i))));
+            case LABEL -> body.add(new IRType.Label(labelName(label(i))));
+            case CALL -> {
+                List<IR.Val> callArgs = new ArrayList<>(argCount(i));
+                for (int k = 0; k < argCount(i); k++) {
+                    callArgs.add(decode(arg(i, k)));
+                }
+                body.add(new IRType.FunCall(callee(i), callArgs, decode(callDst(i))));
+            }
+            case NOP -> {
+            }
+            default -> throw new IllegalStateException("invalid opcode " + opcode(i));
+        }
+    }
+
+    private IR.Val decode(long operand) {
+        return isVar(operand)
+                ? decodedVars.computeIfAbsent(symbol(operand), IRType.Var::new)
+                : decodedConstants.computeIfAbsent(constant(operand), IRType.Constant::new);
+    }
+}
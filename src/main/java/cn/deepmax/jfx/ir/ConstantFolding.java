@@ -0,0 +1,134 @@
+package cn.deepmax.jfx.ir;
+
+/**
+ * evaluate Unary and Binary on constants into a Copy of the result, with the int semantics of the target:
+ * arithmetic wraps, division and remainder by zero or of INT_MIN by -1 are left to run and trap.
+ * a conditional jump on a constant becomes a Jump or is removed.
+ * within a block, a var copied a constant is replaced by it in the operands of those instructions,
+ * so {@code 1 + 2 * 3} folds through its temporaries in one run.
+ * known constants are stamped with a generation, so forgetting all of them at a label or jump is O(1).
+ */
+final class ConstantFolding {
+
+    private ConstantFolding() {
+    }
+
+    /**
+     * @return whether any instruction changed
+     */
+    static boolean run(CompactIR ir) {
+        boolean changed = false;
+        Variables variables = Variables.of(ir);
+        //var v holds known[v] while stamp[v] == generation
+        long[] known = new long[variables.size()];
+        int[] stamp = new int[variables.size()];
+        int generation = 1;
+        for (int i = 0; i < ir.size(); i++) {
+            int opcode = ir.opcode(i);
+            if (opcode == CompactIR.LABEL) {
+                generation++;
+            }
+            if (opcode == CompactIR.UNARY || opcode == CompactIR.BINARY
+                    || opcode == CompactIR.JUMP_IF_ZERO || opcode == CompactIR.JUMP_IF_NOT_ZERO) {
+                for (int k = 0; k < ir.useCount(i); k++) {
+                    long operand = ir.use(i, k);
+                    if (CompactIR.isVar(operand)) {
+                        int v = variables.indexOf(operand);
+                        if (stamp[v] == generation) {
+                            ir.setUse(i, k, known[v]);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            switch (opcode) {
+                case CompactIR.UNARY -> {
+                    long src = ir.operand(i, 0);
+                    if (!CompactIR.isVar(src)) {
+                        int v = unary(ir.unaryOp(i), CompactIR.constant(src));
+                        ir.setCopy(i, CompactIR.ofConstant(v), ir.operand(i, 1));
+                        changed = true;
+                    }
+                }
+                case CompactIR.BINARY -> {
+                    long src1 = ir.operand(i, 0);
+                    long src2 = ir.operand(i, 1);
+                    if (!CompactIR.isVar(src1) && !CompactIR.isVar(src2)) {
+                        int a = CompactIR.constant(src1);
+                        int b = CompactIR.constant(src2);
+                        IRType.BinaryOp op = ir.binaryOp(i);
+                        if (canFold(op, a, b)) {
+                            ir.setCopy(i, CompactIR.ofConstant(binary(op, a, b)), ir.operand(i, 2));
+                            changed = true;
+                        }
+                    }
+                }
+                case CompactIR.JUMP_IF_ZERO, CompactIR.JUMP_IF_NOT_ZERO -> {
+                    long condition = ir.operand(i, 0);
+                    if (!CompactIR.isVar(condition)) {
+                        boolean zero = CompactIR.constant(condition) == 0;
+                        if (zero == (ir.opcode(i) == CompactIR.JUMP_IF_ZERO)) {
+                            ir.setJump(i, ir.label(i));
+                        } else {
+                            ir.setNop(i);
+                        }
+                        changed = true;
+                    }
+                }
+                default -> {
+                }
+            }
+            switch (ir.opcode(i)) {
+                case CompactIR.JUMP, CompactIR.JUMP_IF_ZERO, CompactIR.JUMP_IF_NOT_ZERO, CompactIR.RETURN ->
+                        generation++;
+                case CompactIR.COPY, CompactIR.UNARY, CompactIR.BINARY, CompactIR.CALL -> {
+                    long src = ir.operand(i, 0);
+                    int dst = variables.indexOf(ir.dst(i));
+                    if (ir.opcode(i) == CompactIR.COPY && !CompactIR.isVar(src)) {
+                        known[dst] = src;
+                        stamp[dst] = generation;
+                    } else {
+                        stamp[dst] = 0;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return changed;
+    }
+
+    static int unary(IRType.UnaryOp op, int v) {
+        return switch (op) {
+            case Complement -> ~v;
+            case Negate -> -v;
+            case Not -> v == 0 ? 1 : 0;
+        };
+    }
+
+    static boolean canFold(IRType.BinaryOp op, int a, int b) {
+        return switch (op) {
+            case Divide, Remainder -> b != 0 && !(a == Integer.MIN_VALUE && b == -1);
+            //only comparisons and arithmetic reach the IR, && and || are lowered to jumps
+            case And, Or -> false;
+            default -> true;
+        };
+    }
+
+    static int binary(IRType.BinaryOp op, int a, int b) {
+        return switch (op) {
+            case Add -> a + b;
+            case Subtract -> a - b;
+            case Multiply -> a * b;
+            case Divide -> a / b;
+            case Remainder -> a % b;
+            case Equal -> a == b ? 1 : 0;
+            case NotEqual -> a != b ? 1 : 0;
+            case LessThan -> a < b ? 1 : 0;
+            case LessOrEqual -> a <= b ? 1 : 0;
+            case GreaterThan -> a > b ? 1 : 0;
+            case GreaterOrEqual -> a >= b ? 1 : 0;
+            case And, Or -> throw new IllegalStateException("not folded " + op);
+        };
+    }
+}
@@ -0,0 +1,219 @@
+package cn.deepmax.jfx.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * basic blocks of one {@link CompactIR} function.
+ * block b is instructions {@code start(b) .. end(b) - 1}, blocks are in instruction order and block 0 is the entry.
+ * a block starts at a Label or after a Jump, JumpIfZero, JumpIfNotZero or Return.
+ * node {@link #exit()} stands for leaving the function, after the last block.
+ * edges are kept in index arrays, successors of b are {@code successor(b, 0 .. successorCount(b) - 1)}.
+ * the graph is a snapshot, build it again after the instructions change.
+ */
+public final class ControlFlowGraph {
+
+    private final CompactIR ir;
+    private final int blockCount;
+    /**
+     * first instruction of every block, {@code starts[blockCount]} is the instruction count
+     */
+    private final int[] starts;
+    private final int[] successorStarts;
+    private final int[] successors;
+    private final int[] predecessorStarts;
+    private final int[] predecessors;
+
+    private ControlFlowGraph(CompactIR ir, int blockCount, int[] starts,
+                             int[] successorStarts, int[] successors) {
+        this.ir = ir;
+        this.blockCount = blockCount;
+        this.starts = starts;
+        this.successorStarts = successorStarts;
+        this.successors = successors;
+
+        //predecessors of blocks and exit, from the successor edges
+        int nodes = blockCount + 1;
+        int[] counts = new int[nodes + 1];
+        for (int e = 0; e < successorStarts[blockCount]; e++) {
+            counts[successors[e] + 1]++;
+        }
+        for (int n = 0; n < nodes; n++) {
+            counts[n + 1] += counts[n];
+        }
+        this.predecessorStarts = counts.clone();
+        this.predecessors = new int[successors.length];
+        for (int b = 0; b < blockCount; b++) {
+            for (int e = successorStarts[b]; e < successorStarts[b + 1]; e++) {
+                predecessors[counts[successors[e]]++] = b;
+            }
+        }
+    }
+
+    public static ControlFlowGraph build(IRType.FunctionDef f) {
+        return build(CompactIR.encode(f));
+    }
+
+    public static ControlFlowGraph build(CompactIR ir) {
+        int size = ir.size();
+        //leaders
+        int[] starts = new int[size + 1];
+        int blockCount = 0;
+        boolean leader = true;
+        for (int i = 0; i < size; i++) {
+            int opcode = ir.opcode(i);
+            if (leader || opcode == CompactIR.LABEL) {
+                starts[blockCount++] = i;
+            }
+            leader = isBlockEnd(opcode);
+        }
+        starts[blockCount] = size;
+        starts = Arrays.copyOf(starts, blockCount + 1);
+
+        int[] labelBlocks = new int[ir.labelCount()];
+        Arrays.fill(labelBlocks, -1);
+        for (int b = 0; b < blockCount; b++) {
+            if (ir.opcode(starts[b]) == CompactIR.LABEL) {
+                labelBlocks[ir.label(starts[b])] = b;
+            }
+        }
+
+        //at most two successors, the target and the next block
+        int exit = blockCount;
+        int[] successorStarts = new int[blockCount + 1];
+        int[] successors = new int[blockCount * 2];
+        int edges = 0;
+        for (int b = 0; b < blockCount; b++) {
+            successorStarts[b] = edges;
+            int last = starts[b + 1] - 1;
+            int next = b + 1;
+            switch (ir.opcode(last)) {
+                case CompactIR.RETURN -> successors[edges++] = exit;
+                case CompactIR.JUMP -> successors[edges++] = targetOf(ir, last, labelBlocks);
+                case CompactIR.JUMP_IF_ZERO, CompactIR.JUMP_IF_NOT_ZERO -> {
+                    int target = targetOf(ir, last, labelBlocks);
+                    successors[edges++] = next;
+                    if (target != next) {
+                        successors[edges++] = target;
+                    }
+                }
+                default -> successors[edges++] = next;
+            }
+        }
+        successorStarts[blockCount] = edges;
+        return new ControlFlowGraph(ir, blockCount, starts, successorStarts, Arrays.copyOf(successors, edges));
+    }
+
+    private static boolean isBlockEnd(int opcode) {
+        return opcode == CompactIR.JUMP || opcode == CompactIR.JUMP_IF_ZERO
+                || opcode == CompactIR.JUMP_IF_NOT_ZERO || opcode == CompactIR.RETURN;
+    }
+
+    private static int targetOf(CompactIR ir, int jump, int[] labelBlocks) {
+        int block = labelBlocks[ir.label(jump)];
+        if (block < 0) {
+            throw new IllegalStateException("jump to missing label " + ir.labelName(ir.label(jump)));
+        }
+        return block;
+    }
+
+    public CompactIR ir() {
+        return ir;
+    }
+
+    public int blockCount() {
+        return blockCount;
+    }
+
+    /**
+     * node after the last block, successor of every block that returns or falls off the end
+     */
+    public int exit() {
+        return blockCount;
+    }
+
+    public int start(int block) {
+        return starts[block];
+    }
+
+    /**
+     * exclusive
+     */
+    public int end(int block) {
+        return starts[block + 1];
+    }
+
+    public int successorCount(int block) {
+        return successorStarts[block + 1] - successorStarts[block];
+    }
+
+    public int successor(int block, int k) {
+        return successors[successorStarts[block] + k];
+    }
+
+    /**
+     * @param node a block or exit
+     */
+    public int predecessorCount(int node) {
+        return predecessorStarts[node + 1] - predecessorStarts[node];
+    }
+
+    public int predecessor(int node, int k) {
+        return predecessors[predecessorStarts[node] + k];
+    }
+
+    /**
+     * blocks reachable from the entry, every block before its successors except along back edges
+     */
+    public int[] reversePostorder() {
+        if (blockCount == 0) {
+            return new int[0];
+        }
+        int[] order = new int[blockCount];
+        int next = blockCount;
+        boolean[] seen = new boolean[blockCount];
+        int[] stack = new int[blockCount];
+        int[] edges = new int[blockCount];
+        int depth = 0;
+        stack[depth++] = 0;
+        seen[0] = true;
+        while (depth > 0) {
+            int b = stack[depth - 1];
+            if (edges[depth - 1] < successorCount(b)) {
+                int s = successor(b, edges[depth - 1]++);
+                if (s != exit() && !seen[s]) {
+                    seen[s] = true;
+                    edges[depth] = 0;
+                    stack[depth++] = s;
+                }
+            } else {
+                depth--;
+                order[--next] = b;
+            }
+        }
+        return Arrays.copyOfRange(order, next, blockCount);
+    }
+
+    /**
+     * instructions of all blocks in order, NOPs left out
+     */
+    public List<IR.Instruction> instructions() {
+        List<IR.Instruction> body = new ArrayList<>(ir.size());
+        for (int b = 0; b < blockCount; b++) {
+            for (int i = start(b); i < end(b); i++) {
+                ir.decode(i, body);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * turn all instructions of block into NOPs, drop them with {@link CompactIR#compact()}
+     */
+    public void remove(int block) {
+        for (int i = start(block); i < end(block); i++) {
+            ir.setNop(i);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package cn.deepmax.jfx.ir;
+
+import java.util.Arrays;
+
+/**
+ * replace a var read by the source of the copy into it, where that copy reaches the read on every path.
+ * reaching copies is a forward intersection problem, fact p is a distinct (src, dst) pair of the Copy
+ * instructions, so {@code x = 3} on two branches is one fact that holds after they join.
+ * pairs are numbered grouped by dst, a write of v kills the range of pairs into v and the pairs from v.
+ * a copy whose value is already in its dst is removed.
+ * copies are looked up by their operands before any rewrite, the analysis is about those.
+ */
+final class CopyPropagation {
+
+    /**
+     * low bits of a pair key holding the src operand, a constant operand takes 33 bits and its sign
+     */
+    private static final int SRC_BITS = 34;
+
+    private final CompactIR ir;
+    private final ControlFlowGraph cfg;
+    private final Variables variables;
+    /**
+     * pair of every instruction, -1 if it is not a Copy or copies a var to itself
+     */
+    private final int[] pairOf;
+    /**
+     * var written by every instruction, -1 if none
+     */
+    private final int[] defOf;
+    private final long[] pairSrc;
+    private final int[] pairDst;
+    /**
+     * pairs into var v are {@code byDstStarts[v] .. byDstStarts[v + 1] - 1}
+     */
+    private final int[] byDstStarts;
+    /**
+     * pairs from var v, {@code bySrc[bySrcStarts[v] .. bySrcStarts[v + 1] - 1]}
+     */
+    private final int[] bySrcStarts;
+    private final int[] bySrc;
+    private final Dataflow flow;
+
+    private CopyPropagation(CompactIR ir) {
+        this.ir = ir;
+        this.cfg = ControlFlowGraph.build(ir);
+        this.variables = Variables.of(ir);
+        int size = ir.size();
+        int vars = variables.size();
+        this.pairOf = new int[size];
+        this.defOf = new int[size];
+        long[] keys = new long[size];
+        int copies = 0;
+        for (int i = 0; i < size; i++) {
+            defOf[i] = ir.hasDst(i) ? variables.indexOf(ir.dst(i)) : -1;
+            if (ir.opcode(i) == CompactIR.COPY && ir.operand(i, 0) != ir.dst(i)) {
+                keys[copies++] = key(ir.operand(i, 0), defOf[i]);
+            }
+        }
+        Arrays.sort(keys, 0, copies);
+        int count = 0;
+        for (int k = 0; k < copies; k++) {
+            if (count == 0 || keys[count - 1] != keys[k]) {
+                keys[count++] = keys[k];
+            }
+        }
+
+        this.pairSrc = new long[count];
+        this.pairDst = new int[count];
+        int[] byDstCounts = new int[vars + 1];
+        int[] bySrcCounts = new int[vars + 1];
+        for (int p = 0; p < count; p++) {
+            pairSrc[p] = keys[p] << (64 - SRC_BITS) >> (64 - SRC_BITS);
+            pairDst[p] = (int) (keys[p] >>> SRC_BITS);
+            byDstCounts[pairDst[p] + 1]++;
+            int src = srcVar(p);
+            if (src >= 0) {
+                bySrcCounts[src + 1]++;
+            }
+        }
+        for (int v = 0; v < vars; v++) {
+            byDstCounts[v + 1] += byDstCounts[v];
+            bySrcCounts[v + 1] += bySrcCounts[v];
+        }
+        this.byDstStarts = byDstCounts;
+        this.bySrcStarts = bySrcCounts.clone();
+        this.bySrc = new int[bySrcCounts[vars]];
+        for (int p = 0; p < count; p++) {
+            int src = srcVar(p);
+            if (src >= 0) {
+                bySrc[bySrcCounts[src]++] = p;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            pairOf[i] = ir.opcode(i) == CompactIR.COPY && ir.operand(i, 0) != ir.dst(i)
+                    ? Arrays.binarySearch(keys, 0, count, key(ir.operand(i, 0), defOf[i])) : -1;
+        }
+
+        this.flow = new Dataflow(cfg, Dataflow.Direction.FORWARD, Dataflow.Meet.INTERSECTION, count);
+        long[] gen = new long[flow.words()];
+        long[] kill = new long[flow.words()];
+        //block + 1 of the last block seen writing var v
+        int[] seen = new int[vars];
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            Arrays.fill(gen, 0L);
+            Arrays.fill(kill, 0L);
+            //backwards, a pair is generated if neither of its vars is written after it in the block
+            for (int i = cfg.end(b) - 1; i >= cfg.start(b); i--) {
+                int v = defOf[i];
+                if (v < 0) {
+                    continue;
+                }
+                int p = pairOf[i];
+                if (p >= 0 && (srcVar(p) < 0 || seen[srcVar(p)] != b + 1) && seen[v] != b + 1) {
+                    Dataflow.set(gen, p);
+                }
+                if (seen[v] != b + 1) {
+                    seen[v] = b + 1;
+                    Dataflow.setRange(kill, byDstStarts[v], byDstStarts[v + 1]);
+                    for (int k = bySrcStarts[v]; k < bySrcStarts[v + 1]; k++) {
+                        Dataflow.set(kill, bySrc[k]);
+                    }
+                }
+            }
+            flow.setGen(b, gen);
+            flow.setKill(b, kill);
+        }
+        flow.solve();
+    }
+
+    /**
+     * @return whether any instruction changed
+     */
+    static boolean run(CompactIR ir) {
+        return new CopyPropagation(ir).rewrite();
+    }
+
+    private static long key(long src, int dst) {
+        return (long) dst << SRC_BITS | (src & ((1L << SRC_BITS) - 1));
+    }
+
+    private int srcVar(int p) {
+        return CompactIR.isVar(pairSrc[p]) ? variables.indexOf(pairSrc[p]) : -1;
+    }
+
+    /**
+     * walks the blocks keeping the one copy into every var that reaches the current instruction.
+     * a copy read from var s is stale once s is written, {@code version} counts the writes of every var.
+     */
+    private boolean rewrite() {
+        int vars = variables.size();
+        int[] current = new int[vars];
+        Arrays.fill(current, -1);
+        int[] version = new int[vars];
+        int[] srcVersion = new int[vars];
+        int[] touched = new int[16];
+        boolean changed = false;
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            int touchedCount = 0;
+            //copies into a var kill each other, so at most one of them reaches the block
+            long[] reaching = flow.in(b);
+            for (int w = 0; w < reaching.length; w++) {
+                for (long bits = reaching[w]; bits != 0; bits &= bits - 1) {
+                    int p = w << 6 | Long.numberOfTrailingZeros(bits);
+                    int v = pairDst[p];
+                    take(p, v, current, version, srcVersion);
+                    touched = grow(touched, touchedCount);
+                    touched[touchedCount++] = v;
+                }
+            }
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                for (int k = 0; k < ir.useCount(i); k++) {
+                    long operand = ir.use(i, k);
+                    if (CompactIR.isVar(operand)) {
+                        int p = reachingInto(variables.indexOf(operand), current, version, srcVersion);
+                        if (p >= 0 && pairSrc[p] != operand) {
+                            ir.setUse(i, k, pairSrc[p]);
+                            changed = true;
+                        }
+                    }
+                }
+                if (ir.opcode(i) == CompactIR.COPY) {
+                    long src = ir.operand(i, 0);
+                    int p = reachingInto(defOf[i], current, version, srcVersion);
+                    if (src == ir.operand(i, 1) || p >= 0 && pairSrc[p] == src) {
+                        ir.setNop(i);
+                        changed = true;
+                    }
+                }
+                int v = defOf[i];
+                if (v >= 0) {
+                    version[v]++;
+                    current[v] = -1;
+                    if (pairOf[i] >= 0) {
+                        take(pairOf[i], v, current, version, srcVersion);
+                    }
+                    touched = grow(touched, touchedCount);
+                    touched[touchedCount++] = v;
+                }
+            }
+            for (int k = 0; k < touchedCount; k++) {
+                current[touched[k]] = -1;
+            }
+        }
+        return changed;
+    }
+
+    private void take(int p, int v, int[] current, int[] version, int[] srcVersion) {
+        current[v] = p;
+        int src = srcVar(p);
+        srcVersion[v] = src >= 0 ? version[src] : 0;
+    }
+
+    /**
+     * @return the copy into var v reaching the walk, -1 if none or its src was written since
+     */
+    private int reachingInto(int v, int[] current, int[] version, int[] srcVersion) {
+        int p = current[v];
+        if (p < 0) {
+            return -1;
+        }
+        int src = srcVar(p);
+        return src < 0 || version[src] == srcVersion[v] ? p : -1;
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return size < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+}
@@ -0,0 +1,240 @@
+package cn.deepmax.jfx.ir;
+
+import java.util.Arrays;
+
+/**
+ * worklist solver of a gen/kill bitset problem over the blocks of a {@link ControlFlowGraph}.
+ * facts of every block are {@code words} longs in one array, bit k is fact k.
+ * an analysis sets gen and kill of every block, {@link #solve()} computes
+ * {@code out = gen | (in & ~kill)} forward or {@code in = gen | (out & ~kill)} backward.
+ * the entry (forward) and the exit (backward) see no facts.
+ */
+public final class Dataflow {
+
+    public enum Direction {
+        FORWARD, BACKWARD
+    }
+
+    public enum Meet {
+        /**
+         * a fact holds if it holds on any path, e.g. liveness
+         */
+        UNION,
+        /**
+         * a fact holds if it holds on all paths, e.g. reaching copies
+         */
+        INTERSECTION
+    }
+
+    private final ControlFlowGraph cfg;
+    private final Direction direction;
+    private final Meet meet;
+    private final int words;
+    private final long[] gen;
+    private final long[] kill;
+    private final long[] in;
+    private final long[] out;
+
+    public Dataflow(ControlFlowGraph cfg, Direction direction, Meet meet, int bits) {
+        this.cfg = cfg;
+        this.direction = direction;
+        this.meet = meet;
+        this.words = words(bits);
+        int size = cfg.blockCount() * words;
+        this.gen = new long[size];
+        this.kill = new long[size];
+        this.in = new long[size];
+        this.out = new long[size];
+    }
+
+    public static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    public static boolean get(long[] bits, int bit) {
+        return (bits[bit >>> 6] & 1L << bit) != 0;
+    }
+
+    public static void set(long[] bits, int bit) {
+        bits[bit >>> 6] |= 1L << bit;
+    }
+
+    public static void clear(long[] bits, int bit) {
+        bits[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * set bits from (inclusive) to to (exclusive)
+     */
+    public static void setRange(long[] bits, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            bits[first] |= firstMask & lastMask;
+            return;
+        }
+        bits[first] |= firstMask;
+        for (int w = first + 1; w < last; w++) {
+            bits[w] = -1L;
+        }
+        bits[last] |= lastMask;
+    }
+
+    /**
+     * clear bits from (inclusive) to to (exclusive)
+     */
+    public static void clearRange(long[] bits, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            bits[first] &= ~(firstMask & lastMask);
+            return;
+        }
+        bits[first] &= ~firstMask;
+        for (int w = first + 1; w < last; w++) {
+            bits[w] = 0L;
+        }
+        bits[last] &= ~lastMask;
+    }
+
+    public int words() {
+        return words;
+    }
+
+    public void setGen(int block, long[] bits) {
+        System.arraycopy(bits, 0, gen, block * words, words);
+    }
+
+    public void setKill(int block, long[] bits) {
+        System.arraycopy(bits, 0, kill, block * words, words);
+    }
+
+    /**
+     * facts at the start of block
+     */
+    public long[] in(int block) {
+        return Arrays.copyOfRange(in, block * words, (block + 1) * words);
+    }
+
+    /**
+     * facts at the end of block
+     */
+    public long[] out(int block) {
+        return Arrays.copyOfRange(out, block * words, (block + 1) * words);
+    }
+
+    public Dataflow solve() {
+        int blocks = cfg.blockCount();
+        if (blocks == 0) {
+            return this;
+        }
+        boolean forward = direction == Direction.FORWARD;
+        //results only grow (union) or shrink (intersection) from the initial guess
+        if (meet == Meet.INTERSECTION) {
+            Arrays.fill(forward ? out : in, -1L);
+        }
+
+        //reachable blocks in reverse postorder forward, in postorder backward, then the others
+        int[] order = new int[blocks];
+        int[] reachable = cfg.reversePostorder();
+        boolean[] queued = new boolean[blocks];
+        for (int k = 0; k < reachable.length; k++) {
+            order[k] = forward ? reachable[k] : reachable[reachable.length - 1 - k];
+            queued[order[k]] = true;
+        }
+        int n = reachable.length;
+        for (int b = 0; b < blocks; b++) {
+            if (!queued[b]) {
+                order[n++] = b;
+                queued[b] = true;
+            }
+        }
+
+        //circular queue, a block is in it at most once
+        int[] queue = order;
+        int head = 0;
+        int count = blocks;
+        long[] acc = new long[words];
+        while (count > 0) {
+            int b = queue[head];
+            head = (head + 1) % blocks;
+            count--;
+            queued[b] = false;
+            if (forward ? meetPredecessors(b, acc) : meetSuccessors(b, acc)) {
+                int edges = forward ? cfg.successorCount(b) : cfg.predecessorCount(b);
+                for (int k = 0; k < edges; k++) {
+                    int next = forward ? cfg.successor(b, k) : cfg.predecessor(b, k);
+                    if (next != cfg.exit() && !queued[next]) {
+                        queued[next] = true;
+                        queue[(head + count) % blocks] = next;
+                        count++;
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return whether out of b changed
+     */
+    private boolean meetPredecessors(int b, long[] acc) {
+        Arrays.fill(acc, meet == Meet.INTERSECTION && b != 0 && cfg.predecessorCount(b) > 0 ? -1L : 0L);
+        for (int k = 0; k < cfg.predecessorCount(b); k++) {
+            combine(acc, out, cfg.predecessor(b, k) * words);
+        }
+        if (b == 0 && meet == Meet.INTERSECTION) {
+            Arrays.fill(acc, 0L);
+        }
+        System.arraycopy(acc, 0, in, b * words, words);
+        return transfer(b, in, out);
+    }
+
+    /**
+     * @return whether in of b changed
+     */
+    private boolean meetSuccessors(int b, long[] acc) {
+        Arrays.fill(acc, meet == Meet.INTERSECTION ? -1L : 0L);
+        for (int k = 0; k < cfg.successorCount(b); k++) {
+            int s = cfg.successor(b, k);
+            if (s == cfg.exit()) {
+                if (meet == Meet.INTERSECTION) {
+                    Arrays.fill(acc, 0L);
+                }
+            } else {
+                combine(acc, in, s * words);
+            }
+        }
+        System.arraycopy(acc, 0, out, b * words, words);
+        return transfer(b, out, in);
+    }
+
+    private void combine(long[] acc, long[] facts, int from) {
+        for (int w = 0; w < words; w++) {
+            acc[w] = meet == Meet.UNION ? acc[w] | facts[from + w] : acc[w] & facts[from + w];
+        }
+    }
+
+    private boolean transfer(int b, long[] from, long[] to) {
+        boolean changed = false;
+        int at = b * words;
+        for (int w = at; w < at + words; w++) {
+            long v = gen[w] | from[w] & ~kill[w];
+            if (v != to[w]) {
+                to[w] = v;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
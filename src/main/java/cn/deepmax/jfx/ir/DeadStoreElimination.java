@@ -0,0 +1,35 @@
+package cn.deepmax.jfx.ir;
+
+/**
+ * remove Copy, Unary and Binary whose dst is not live after them, such as the result of an expression statement.
+ * a FunCall stays for its side effects even when nothing reads its dst.
+ */
+final class DeadStoreElimination {
+
+    private DeadStoreElimination() {
+    }
+
+    /**
+     * @return whether any instruction was removed
+     */
+    static boolean run(CompactIR ir) {
+        ControlFlowGraph cfg = ControlFlowGraph.build(ir);
+        Liveness liveness = Liveness.analyze(cfg);
+        boolean changed = false;
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            long[] live = liveness.out(b);
+            for (int i = cfg.end(b) - 1; i >= cfg.start(b); i--) {
+                int opcode = ir.opcode(i);
+                boolean store = opcode == CompactIR.COPY || opcode == CompactIR.UNARY || opcode == CompactIR.BINARY;
+                if (store && !liveness.isLive(live, ir.dst(i))) {
+                    //gone, live vars before it are the ones after it
+                    ir.setNop(i);
+                    changed = true;
+                } else {
+                    liveness.transfer(i, live);
+                }
+            }
+        }
+        return changed;
+    }
+}
@@ -1,22 +1,40 @@
 package cn.deepmax.jfx.ir;
 
+import cn.deepmax.jfx.CompilationContext;
 import cn.deepmax.jfx.exception.SemanticException;
+import cn.deepmax.jfx.parse.Annotations;
 import cn.deepmax.jfx.parse.Ast;
 import cn.deepmax.jfx.parse.AstNode;
 import cn.deepmax.jfx.parse.Labels;
-import cn.deepmax.jfx.parse.TypeChecker;
+import cn.deepmax.jfx.utils.IntMap;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class IRConverter {
 
     private AstNode.Program program;
-    private final TypeChecker typeChecker;
+    private final CompilationContext context;
+    /**
+     * symbols and loop labels of an unresolved tree, null when the tree is resolved by Resolver.resolveProgram
+     */
+    private final Annotations annotations;
+    /**
+     * one Var per symbol and one Constant per value of a function, so equal values are the same instance.
+     * symbols belong to one function, vars need no reset
+     */
+    private IRType.Var[] vars = new IRType.Var[64];
+    private final IntMap<IRType.Constant> constants = new IntMap<>();
 
-    public IRConverter(AstNode.Program program, TypeChecker typeChecker) {
+    public IRConverter(AstNode.Program program, CompilationContext context) {
+        this(program, context, null);
+    }
+
+    public IRConverter(AstNode.Program program, CompilationContext context, Annotations annotations) {
         this.program = program;
-        this.typeChecker = typeChecker;
+        this.context = context;
+        this.annotations = annotations;
     }
 
     public IR.Program convertToIR() {
@@ -35,9 +53,10 @@ public class IRConverter {
         if (fn.body() == null) {
             return null;
         }
+        constants.clear();
         List<IR.Instruction> instructions = convertBlockItems(fn.body().blockItems());
-        List<String> paramNames = fn.params().stream().map(f -> ((Ast.VarParam) f).identifier()).toList();
-        return new IRType.FunctionDef(fn.identifier(), paramNames, instructions);
+        List<Integer> params = fn.params().stream().map(f -> symbolOf((Ast.VarParam) f)).toList();
+        return new IRType.FunctionDef(fn.identifier(), params, instructions);
     }
 
     private List<IR.Instruction> convertBlockItems(List<AstNode.BlockItem> itemList) {
@@ -46,7 +65,7 @@ public class IRConverter {
             convertBlockItem(blockItem, list);
         }
         //always return 0
-        list.add(new IRType.Return(new IRType.Constant(0)));
+        list.add(new IRType.Return(constant(0)));
         return list;
     }
 
@@ -77,7 +96,7 @@ public class IRConverter {
             return;
         }
         var result = convertValue(statement.exp(), list);
-        IRType.Var v = new IRType.Var(statement.identifier());
+        IRType.Var v = var(symbolOf(statement));
         list.add(new IRType.Copy(result, v));
     }
 
@@ -96,14 +115,14 @@ public class IRConverter {
                 //no instructions
             }
             case Ast.If s -> {
-                String exitLabel = "if_exit_label." + IRType.Label.nextId();
+                String exitLabel = "if_exit_label." + context.nextLabelId();
                 if (s.elseSt() == null) {
                     var condition = convertValue(s.condition(), list);
                     list.add(new IRType.JumpIfZero(condition, exitLabel));
                     convertStatement(s.then(), list);
                     list.add(new IRType.Label(exitLabel));
                 } else {
-                    String elseLabel = "if_else_label." + IRType.Label.nextId();
+                    String elseLabel = "if_else_label." + context.nextLabelId();
                     var condition = convertValue(s.condition(), list);
                     list.add(new IRType.JumpIfZero(condition, elseLabel));
                     convertStatement(s.then(), list);
@@ -118,45 +137,95 @@ public class IRConverter {
                     convertBlockItem(blockItem, list);
                 }
             }
-            case Ast.AnnotationLabeledStatement ano -> {
-                String continueLabelOf = Labels.continueLabelOf(ano.label());
-                String breakLabelOf = Labels.breakLabelOf(ano.label());
-                switch (ano.statement()) {
-                    case Ast.Break bk -> list.add(new IRType.Jump(breakLabelOf));
-                    case Ast.Continue ct -> list.add(new IRType.Jump(continueLabelOf));
-                    case Ast.DoWhile w -> {
-                        String startLabel = "dowhile_start_" + IRType.Label.nextId();
-                        list.add(new IRType.Label(startLabel));
-                        convertStatement(w.body(), list);
-                        list.add(new IRType.Label(continueLabelOf));
-                        var conditionResult = convertValue(w.condition(), list);
-                        list.add(new IRType.JumpIfNotZero(conditionResult, startLabel));
-                        list.add(new IRType.Label(breakLabelOf));
-                    }
-                    case Ast.While w -> {
-                        list.add(new IRType.Label(continueLabelOf));
-                        var conditionResult = convertValue(w.condition(), list);
-                        list.add(new IRType.JumpIfZero(conditionResult, breakLabelOf));
-                        convertStatement(w.body(), list);
-                        list.add(new IRType.Jump(continueLabelOf));
-                        list.add(new IRType.Label(breakLabelOf));
-                    }
-                    case Ast.For f -> {
-                        convertForInit(f.init(), list);
-                        String startLabel = "for_start_" + IRType.Label.nextId();
-                        list.add(new IRType.Label(startLabel));
-                        var conditionV = f.condition() == null ? new IRType.Constant(1) : convertValue(f.condition(), list);
-                        list.add(new IRType.JumpIfZero(conditionV, breakLabelOf));
-                        convertStatement(f.body(), list);
-                        list.add(new IRType.Label(continueLabelOf));
-                        if (f.post() != null) convertValue(f.post(), list);
-                        list.add(new IRType.Jump(startLabel));
-                        list.add(new IRType.Label(breakLabelOf));
-                    }
+            case Ast.AnnotationLabeledStatement ano -> convertLabeled(ano.statement(), ano.label(), list);
+            case Ast.Break bk -> convertLabeled(bk, labelOf(bk), list);
+            case Ast.Continue ct -> convertLabeled(ct, labelOf(ct), list);
+            case Ast.DoWhile w -> convertLabeled(w, labelOf(w), list);
+            case Ast.While w -> convertLabeled(w, labelOf(w), list);
+            case Ast.For f -> convertLabeled(f, labelOf(f), list);
+            default -> throw new UnsupportedOperationException(statement.toString());
+        }
+    }
 
-                    default -> throw new UnsupportedOperationException(ano.statement().toString());
-                }
+    private String labelOf(AstNode.Statement statement) {
+        String label = annotations == null ? null : annotations.labelOf(statement);
+        if (label == null) {
+            throw new UnsupportedOperationException("unlabeled " + statement);
+        }
+        return label;
+    }
+
+    /**
+     * a resolved tree has the symbol in the name
+     */
+    private int symbolOf(Ast.Var v) {
+        return annotations == null ? IRType.Var.idOf(v.identifier()) : annotations.symbolOf(v);
+    }
+
+    private int symbolOf(Ast.VarDeclare d) {
+        return annotations == null ? IRType.Var.idOf(d.identifier()) : annotations.symbolOf(d);
+    }
+
+    private int symbolOf(Ast.VarParam p) {
+        return annotations == null ? IRType.Var.idOf(p.identifier()) : annotations.symbolOf(p);
+    }
+
+    private IRType.Var var(int symbol) {
+        if (symbol >= vars.length) {
+            vars = Arrays.copyOf(vars, Math.max(symbol + 1, vars.length * 2));
+        }
+        IRType.Var v = vars[symbol];
+        if (v == null) {
+            v = new IRType.Var(symbol);
+            vars[symbol] = v;
+        }
+        return v;
+    }
+
+    private IRType.Var newTemp() {
+        return var(context.symbols().add(IRType.Var.TEMP));
+    }
+
+    private IRType.Constant constant(int value) {
+        return constants.computeIfAbsent(value, IRType.Constant::new);
+    }
+
+    private void convertLabeled(AstNode.Statement statement, String label, List<IR.Instruction> list) {
+        String continueLabelOf = Labels.continueLabelOf(label);
+        String breakLabelOf = Labels.breakLabelOf(label);
+        switch (statement) {
+            case Ast.Break bk -> list.add(new IRType.Jump(breakLabelOf));
+            case Ast.Continue ct -> list.add(new IRType.Jump(continueLabelOf));
+            case Ast.DoWhile w -> {
+                String startLabel = "dowhile_start_" + context.nextLabelId();
+                list.add(new IRType.Label(startLabel));
+                convertStatement(w.body(), list);
+                list.add(new IRType.Label(continueLabelOf));
+                var conditionResult = convertValue(w.condition(), list);
+                list.add(new IRType.JumpIfNotZero(conditionResult, startLabel));
+                list.add(new IRType.Label(breakLabelOf));
+            }
+            case Ast.While w -> {
+                list.add(new IRType.Label(continueLabelOf));
+                var conditionResult = convertValue(w.condition(), list);
+                list.add(new IRType.JumpIfZero(conditionResult, breakLabelOf));
+                convertStatement(w.body(), list);
+                list.add(new IRType.Jump(continueLabelOf));
+                list.add(new IRType.Label(breakLabelOf));
             }
+            case Ast.For f -> {
+                convertForInit(f.init(), list);
+                String startLabel = "for_start_" + context.nextLabelId();
+                list.add(new IRType.Label(startLabel));
+                var conditionV = f.condition() == null ? constant(1) : convertValue(f.condition(), list);
+                list.add(new IRType.JumpIfZero(conditionV, breakLabelOf));
+                convertStatement(f.body(), list);
+                list.add(new IRType.Label(continueLabelOf));
+                if (f.post() != null) convertValue(f.post(), list);
+                list.add(new IRType.Jump(startLabel));
+                list.add(new IRType.Label(breakLabelOf));
+            }
+
             default -> throw new UnsupportedOperationException(statement.toString());
         }
     }
@@ -187,65 +256,40 @@ public class IRConverter {
     private IR.Val convertValue(AstNode.Exp exp, List<IR.Instruction> list) {
         return switch (exp) {
             //convert factor here
-            case Ast.FactorExp f -> switch (f.factor()) {
-                case Ast.IntConstantFactor i -> new IRType.Constant(i.value());
-                case Ast.Unary u -> {
-                    var src = convertValue(new Ast.FactorExp(u.factor()), list);
-                    var dst = IRType.Var.makeTemp();
-                    var op = convertUnaryOp(u);
-                    list.add(new IRType.Unary(op, src, dst));
-                    yield dst;
-                }
-                case Ast.ExpFactor e -> convertValue(e.exp(), list);
-                case Ast.FunctionCall call -> {
-                    List<IR.Val> params = new ArrayList<>();
-                    for (AstNode.Exp arg : call.args()) {
-                        params.add(convertValue(arg, list));
-                    }
-                    var dst = IRType.Var.makeTemp();
-                    var ins = new IRType.FunCall(
-                            call.identifier(),
-                            params,
-                            dst
-                    );
-                    list.add(ins);
-                    yield dst;
-                }
-                default -> throw new UnsupportedOperationException("invalid factor " + f.factor().toString());
-            };
+            case Ast.FactorExp f -> convertFactor(f.factor(), list);
             case Ast.Binary b -> {
                 var bop = b.operator();
                 if (bop == Ast.BinaryOp.And) {
                     //should support short-circuit
-                    String falseLabel = "and_false_label." + IRType.Label.nextId();
-                    String exitLabel = "and_exit_label." + IRType.Label.nextId();
-                    var dst = IRType.Var.makeTemp();
+                    String falseLabel = "and_false_label." + context.nextLabelId();
+                    String exitLabel = "and_exit_label." + context.nextLabelId();
+                    var dst = newTemp();
 
                     var v1 = convertValue(b.left(), list);
                     list.add(new IRType.JumpIfZero(v1, falseLabel));
                     var v2 = convertValue(b.right(), list);
                     list.add(new IRType.JumpIfZero(v2, falseLabel));
-                    list.add(new IRType.Copy(new IRType.Constant(1), dst));
+                    list.add(new IRType.Copy(constant(1), dst));
                     list.add(new IRType.Jump(exitLabel));
                     list.add(new IRType.Label(falseLabel));
-                    list.add(new IRType.Copy(new IRType.Constant(0), dst));
+                    list.add(new IRType.Copy(constant(0), dst));
                     list.add(new IRType.Label(exitLabel));
 
                     yield dst;
                 } else if (bop == Ast.BinaryOp.Or) {
                     //should support short-circuit
-                    String trueLabel = "or_true_label." + IRType.Label.nextId();
-                    String exitLabel = "or_exit_label." + IRType.Label.nextId();
-                    var dst = IRType.Var.makeTemp();
+                    String trueLabel = "or_true_label." + context.nextLabelId();
+                    String exitLabel = "or_exit_label." + context.nextLabelId();
+                    var dst = newTemp();
 
                     var v1 = convertValue(b.left(), list);
                     list.add(new IRType.JumpIfNotZero(v1, trueLabel));
                     var v2 = convertValue(b.right(), list);
                     list.add(new IRType.JumpIfNotZero(v2, trueLabel));
-                    list.add(new IRType.Copy(new IRType.Constant(0), dst));
+                    list.add(new IRType.Copy(constant(0), dst));
                     list.add(new IRType.Jump(exitLabel));
                     list.add(new IRType.Label(trueLabel));
-                    list.add(new IRType.Copy(new IRType.Constant(1), dst));
+                    list.add(new IRType.Copy(constant(1), dst));
                     list.add(new IRType.Label(exitLabel));
 
                     yield dst;
@@ -253,17 +297,17 @@ public class IRConverter {
                     //normal operators
                     var v1 = convertValue(b.left(), list);
                     var v2 = convertValue(b.right(), list);
-                    var dst = IRType.Var.makeTemp();
+                    var dst = newTemp();
                     IR.BinaryOperator op = convertBinaryOp(b.operator());
                     list.add(new IRType.Binary(op, v1, v2, dst));
                     yield dst;
                 }
             }
-            case Ast.Var v -> new IRType.Var(v.identifier());
+            case Ast.Var v -> var(symbolOf(v));
             case Ast.Assignment ag -> {
                 var result = convertValue(ag.right(), list);
                 if (ag.left() instanceof Ast.Var v) {
-                    IRType.Var dst = new IRType.Var(v.identifier());
+                    IRType.Var dst = var(symbolOf(v));
                     list.add(new IRType.Copy(result, dst));
                     yield dst;
                 } else {
@@ -272,9 +316,9 @@ public class IRConverter {
             }
             case Ast.Conditional c -> {
                 //should support short-circuit
-                String falseLabel = "conditional_false_label." + IRType.Label.nextId();
-                String exitLabel = "conditional_exit_label." + IRType.Label.nextId();
-                var dst = IRType.Var.makeTemp();
+                String falseLabel = "conditional_false_label." + context.nextLabelId();
+                String exitLabel = "conditional_exit_label." + context.nextLabelId();
+                var dst = newTemp();
 
                 var condition = convertValue(c.condition(), list);
                 list.add(new IRType.JumpIfZero(condition, falseLabel));
@@ -293,6 +337,35 @@ public class IRConverter {
         };
     }
 
+    private IR.Val convertFactor(AstNode.Factor factor, List<IR.Instruction> list) {
+        return switch (factor) {
+            case Ast.IntConstantFactor i -> constant(i.value());
+            case Ast.Unary u -> {
+                var src = convertFactor(u.factor(), list);
+                var dst = newTemp();
+                var op = convertUnaryOp(u);
+                list.add(new IRType.Unary(op, src, dst));
+                yield dst;
+            }
+            case Ast.ExpFactor e -> convertValue(e.exp(), list);
+            case Ast.FunctionCall call -> {
+                List<IR.Val> params = new ArrayList<>();
+                for (AstNode.Exp arg : call.args()) {
+                    params.add(convertValue(arg, list));
+                }
+                var dst = newTemp();
+                var ins = new IRType.FunCall(
+                        call.identifier(),
+                        params,
+                        dst
+                );
+                list.add(ins);
+                yield dst;
+            }
+            default -> throw new UnsupportedOperationException("invalid factor " + factor.toString());
+        };
+    }
+
     private IR.BinaryOperator convertBinaryOp(AstNode.BinaryOperator operator) {
         return switch (operator) {
             case Ast.BinaryOp.Add -> IRType.BinaryOp.Add;
@@ -1,10 +1,6 @@
 package cn.deepmax.jfx.ir;
 
-import cn.deepmax.jfx.parse.Identifiers;
-
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class IRType {
 
@@ -15,32 +11,27 @@ public class IRType {
 
     }
 
-    public record Var(String identifier) implements IR.Val {
-
-        private static final AtomicLong id = new AtomicLong(0);
+    /**
+     * @param symbol see {@link cn.deepmax.jfx.Symbols}
+     */
+    public record Var(int symbol) implements IR.Val {
 
-        public static Var makeTemp() {
-            String name = makeTempVarName();
-            return new Var(name);
-        }
+        /**
+         * raw name of temporaries
+         */
+        public static final String TEMP = "var";
 
-        public static long idOf(String identifier) {
+        /**
+         * @param identifier resolved name "a.3", its suffix is the symbol
+         */
+        public static int idOf(String identifier) {
             int idx = identifier.indexOf(".");
             if (idx != -1) {
-                long id = Long.parseLong(identifier.substring(idx + 1));
-                return id;
+                return Integer.parseInt(identifier, idx + 1, identifier.length(), 10);
             } else {
                 throw new UnsupportedOperationException("identifier name not valid : " + identifier);
             }
         }
-
-        public static int offset(String identifier) {
-            return (int) (idOf(identifier) * 4);
-        }
-
-        private static String makeTempVarName() {
-            return "var." + id.getAndIncrement();
-        }
     }
 
     public record Return(IR.Val value) implements IR.Instruction {
@@ -66,11 +57,6 @@ public class IRType {
     }
 
     public record Label(String identifier) implements IR.Instruction {
-        public static AtomicInteger id = new AtomicInteger(0);
-
-        public static int nextId() {
-            return id.getAndIncrement();
-        }
     }
 
     public record FunCall(String functionName, List<IR.Val> args, IR.Val dst) implements IR.Instruction {
@@ -81,7 +67,10 @@ public class IRType {
 
     }
 
-    public record FunctionDef(String identifier, List<String> params,
+    /**
+     * @param params symbols of the params
+     */
+    public record FunctionDef(String identifier, List<Integer> params,
                               List<IR.Instruction> body) implements IR.FunctionDef {
     }
 
@@ -0,0 +1,87 @@
+package cn.deepmax.jfx.ir;
+
+import java.util.Arrays;
+
+/**
+ * vars whose value may still be read, backward union over the vars of one function.
+ * walk a block from {@link #out(int)} backwards with {@link #transfer(int, long[])} to get liveness at
+ * every instruction.
+ */
+public final class Liveness {
+
+    private final CompactIR ir;
+    private final Variables variables;
+    private final Dataflow flow;
+
+    private Liveness(ControlFlowGraph cfg) {
+        this.ir = cfg.ir();
+        this.variables = Variables.of(ir);
+        this.flow = new Dataflow(cfg, Dataflow.Direction.BACKWARD, Dataflow.Meet.UNION, variables.size());
+        long[] gen = new long[flow.words()];
+        long[] kill = new long[flow.words()];
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            Arrays.fill(gen, 0L);
+            Arrays.fill(kill, 0L);
+            for (int i = cfg.end(b) - 1; i >= cfg.start(b); i--) {
+                if (ir.hasDst(i)) {
+                    int v = variables.indexOf(ir.dst(i));
+                    Dataflow.clear(gen, v);
+                    Dataflow.set(kill, v);
+                }
+                for (int k = 0; k < ir.useCount(i); k++) {
+                    long operand = ir.use(i, k);
+                    if (CompactIR.isVar(operand)) {
+                        Dataflow.set(gen, variables.indexOf(operand));
+                    }
+                }
+            }
+            flow.setGen(b, gen);
+            flow.setKill(b, kill);
+        }
+        flow.solve();
+    }
+
+    public static Liveness analyze(ControlFlowGraph cfg) {
+        return new Liveness(cfg);
+    }
+
+    /**
+     * live vars after the last instruction of block, a new array
+     */
+    public long[] out(int block) {
+        return flow.out(block);
+    }
+
+    /**
+     * live vars before the block
+     */
+    public long[] in(int block) {
+        return flow.in(block);
+    }
+
+    /**
+     * turn live vars after instruction i into live vars before it
+     */
+    public void transfer(int i, long[] live) {
+        if (ir.hasDst(i)) {
+            Dataflow.clear(live, variables.indexOf(ir.dst(i)));
+        }
+        for (int k = 0; k < ir.useCount(i); k++) {
+            long operand = ir.use(i, k);
+            if (CompactIR.isVar(operand)) {
+                Dataflow.set(live, variables.indexOf(operand));
+            }
+        }
+    }
+
+    /**
+     * @return whether operand is a var live in live, false for constants
+     */
+    public boolean isLive(long[] live, long operand) {
+        if (!CompactIR.isVar(operand)) {
+            return false;
+        }
+        int v = variables.indexOf(operand);
+        return v >= 0 && Dataflow.get(live, v);
+    }
+}
@@ -0,0 +1,42 @@
+package cn.deepmax.jfx.ir;
+
+import cn.deepmax.jfx.CompileOptions;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * runs the chosen TACKY passes on every function until none of them changes anything.
+ * passes rewrite the {@link CompactIR} in place, removed instructions are dropped at the end.
+ */
+public final class Optimizer {
+
+    private Optimizer() {
+    }
+
+    public static void optimize(List<CompactIR> functions, Set<CompileOptions.Optimization> optimizations) {
+        for (CompactIR f : functions) {
+            optimize(f, optimizations);
+        }
+    }
+
+    public static void optimize(CompactIR f, Set<CompileOptions.Optimization> optimizations) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            if (optimizations.contains(CompileOptions.Optimization.FOLD_CONSTANTS)) {
+                changed |= ConstantFolding.run(f);
+            }
+            if (optimizations.contains(CompileOptions.Optimization.ELIMINATE_UNREACHABLE_CODE)) {
+                changed |= UnreachableCodeElimination.run(f);
+            }
+            if (optimizations.contains(CompileOptions.Optimization.PROPAGATE_COPIES)) {
+                changed |= CopyPropagation.run(f);
+            }
+            if (optimizations.contains(CompileOptions.Optimization.ELIMINATE_DEAD_STORES)) {
+                changed |= DeadStoreElimination.run(f);
+            }
+        }
+        f.compact();
+    }
+}
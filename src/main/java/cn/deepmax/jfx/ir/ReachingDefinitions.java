@@ -0,0 +1,128 @@
+package cn.deepmax.jfx.ir;
+
+import java.util.Arrays;
+
+/**
+ * instructions writing a var whose value may still be in it, forward union.
+ * fact d is a definition, see {@link #definition(int)}. definitions of one var are numbered together,
+ * so killing them is a range of bits.
+ * walk a block from {@link #in(int)} with {@link #transfer(int, long[])} to get the definitions
+ * reaching every instruction.
+ */
+public final class ReachingDefinitions {
+
+    private final CompactIR ir;
+    private final Variables variables;
+    /**
+     * instruction of every definition
+     */
+    private final int[] definitions;
+    /**
+     * definition of every instruction, -1 if it writes nothing
+     */
+    private final int[] definitionOf;
+    /**
+     * definitions of var v are {@code byVariableStarts[v] .. byVariableStarts[v + 1] - 1}
+     */
+    private final int[] byVariableStarts;
+    private final Dataflow flow;
+
+    private ReachingDefinitions(ControlFlowGraph cfg) {
+        this.ir = cfg.ir();
+        this.variables = Variables.of(ir);
+        int size = ir.size();
+        int vars = variables.size();
+        this.definitionOf = new int[size];
+        int[] counts = new int[vars + 1];
+        for (int i = 0; i < size; i++) {
+            if (ir.hasDst(i)) {
+                counts[variables.indexOf(ir.dst(i)) + 1]++;
+            }
+        }
+        for (int v = 0; v < vars; v++) {
+            counts[v + 1] += counts[v];
+        }
+        this.byVariableStarts = counts.clone();
+        this.definitions = new int[counts[vars]];
+        for (int i = 0; i < size; i++) {
+            if (ir.hasDst(i)) {
+                int d = counts[variables.indexOf(ir.dst(i))]++;
+                definitions[d] = i;
+                definitionOf[i] = d;
+            } else {
+                definitionOf[i] = -1;
+            }
+        }
+
+        this.flow = new Dataflow(cfg, Dataflow.Direction.FORWARD, Dataflow.Meet.UNION, definitions.length);
+        long[] gen = new long[flow.words()];
+        long[] kill = new long[flow.words()];
+        //block + 1 of the last block seen defining var v, its last definition there is the one generated
+        int[] seen = new int[vars];
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            Arrays.fill(gen, 0L);
+            Arrays.fill(kill, 0L);
+            for (int i = cfg.end(b) - 1; i >= cfg.start(b); i--) {
+                int d = definitionOf[i];
+                if (d >= 0) {
+                    int v = variables.indexOf(ir.dst(i));
+                    if (seen[v] != b + 1) {
+                        seen[v] = b + 1;
+                        Dataflow.setRange(kill, byVariableStarts[v], byVariableStarts[v + 1]);
+                        Dataflow.set(gen, d);
+                    }
+                }
+            }
+            flow.setGen(b, gen);
+            flow.setKill(b, kill);
+        }
+        flow.solve();
+    }
+
+    public static ReachingDefinitions analyze(ControlFlowGraph cfg) {
+        return new ReachingDefinitions(cfg);
+    }
+
+    public int definitionCount() {
+        return definitions.length;
+    }
+
+    /**
+     * @return the instruction of definition d
+     */
+    public int definition(int d) {
+        return definitions[d];
+    }
+
+    /**
+     * definitions reaching the start of block, a new array
+     */
+    public long[] in(int block) {
+        return flow.in(block);
+    }
+
+    public long[] out(int block) {
+        return flow.out(block);
+    }
+
+    /**
+     * turn definitions reaching instruction i into those reaching the next one
+     */
+    public void transfer(int i, long[] reaching) {
+        int d = definitionOf[i];
+        if (d < 0) {
+            return;
+        }
+        int v = variables.indexOf(ir.dst(i));
+        Dataflow.clearRange(reaching, byVariableStarts[v], byVariableStarts[v + 1]);
+        Dataflow.set(reaching, d);
+    }
+
+    /**
+     * @return whether instruction i is a definition in reaching
+     */
+    public boolean reaches(long[] reaching, int i) {
+        int d = definitionOf[i];
+        return d >= 0 && Dataflow.get(reaching, d);
+    }
+}
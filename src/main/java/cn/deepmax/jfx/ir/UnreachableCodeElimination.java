@@ -0,0 +1,74 @@
+package cn.deepmax.jfx.ir;
+
+/**
+ * remove blocks the entry cannot reach, such as the {@code return 0} after an explicit return,
+ * then jumps to the block right after them and labels no jump targets anymore.
+ */
+final class UnreachableCodeElimination {
+
+    private UnreachableCodeElimination() {
+    }
+
+    /**
+     * @return whether any instruction was removed
+     */
+    static boolean run(CompactIR ir) {
+        //a block left with only NOPs by an earlier run would sit between a jump and its target
+        ir.compact();
+        ControlFlowGraph cfg = ControlFlowGraph.build(ir);
+        int blocks = cfg.blockCount();
+        boolean[] reachable = new boolean[blocks];
+        for (int b : cfg.reversePostorder()) {
+            reachable[b] = true;
+        }
+
+        boolean changed = false;
+        for (int b = 0; b < blocks; b++) {
+            if (!reachable[b]) {
+                changed |= removeAll(ir, cfg.start(b), cfg.end(b));
+            }
+        }
+
+        //a jump to the next kept block, the fall through goes there too
+        int next = -1;
+        for (int b = blocks - 1; b >= 0; b--) {
+            if (!reachable[b]) {
+                continue;
+            }
+            int last = cfg.end(b) - 1;
+            int opcode = ir.opcode(last);
+            if ((opcode == CompactIR.JUMP || opcode == CompactIR.JUMP_IF_ZERO || opcode == CompactIR.JUMP_IF_NOT_ZERO)
+                    && next >= 0 && cfg.successorCount(b) == 1 && cfg.successor(b, 0) == next) {
+                ir.setNop(last);
+                changed = true;
+            }
+            next = b;
+        }
+
+        boolean[] targeted = new boolean[ir.labelCount()];
+        for (int i = 0; i < ir.size(); i++) {
+            int opcode = ir.opcode(i);
+            if (opcode == CompactIR.JUMP || opcode == CompactIR.JUMP_IF_ZERO || opcode == CompactIR.JUMP_IF_NOT_ZERO) {
+                targeted[ir.label(i)] = true;
+            }
+        }
+        for (int i = 0; i < ir.size(); i++) {
+            if (ir.opcode(i) == CompactIR.LABEL && !targeted[ir.label(i)]) {
+                ir.setNop(i);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean removeAll(CompactIR ir, int from, int to) {
+        boolean changed = false;
+        for (int i = from; i < to; i++) {
+            if (ir.opcode(i) != CompactIR.NOP) {
+                ir.setNop(i);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,73 @@
+package cn.deepmax.jfx.ir;
+
+import java.util.Arrays;
+
+/**
+ * dense numbering of the vars one function uses, symbols are compile-wide and would make bitsets of every
+ * function as long as all symbols of the program
+ */
+final class Variables {
+
+    /**
+     * sorted symbols, the index of a symbol is its number
+     */
+    private final int[] symbols;
+
+    private Variables(int[] symbols) {
+        this.symbols = symbols;
+    }
+
+    static Variables of(CompactIR ir) {
+        int[] all = new int[16];
+        int n = 0;
+        for (int param : ir.params()) {
+            all = grow(all, n);
+            all[n++] = param;
+        }
+        for (int i = 0; i < ir.size(); i++) {
+            for (int k = 0; k < ir.useCount(i); k++) {
+                long operand = ir.use(i, k);
+                if (CompactIR.isVar(operand)) {
+                    all = grow(all, n);
+                    all[n++] = CompactIR.symbol(operand);
+                }
+            }
+            if (ir.hasDst(i)) {
+                all = grow(all, n);
+                all[n++] = CompactIR.symbol(ir.dst(i));
+            }
+        }
+        Arrays.sort(all, 0, n);
+        int distinct = 0;
+        for (int k = 0; k < n; k++) {
+            if (distinct == 0 || all[distinct - 1] != all[k]) {
+                all[distinct++] = all[k];
+            }
+        }
+        return new Variables(Arrays.copyOf(all, distinct));
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return size < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    int size() {
+        return symbols.length;
+    }
+
+    /**
+     * @return number of the var, -1 if the function does not use it
+     */
+    int indexOf(int symbol) {
+        int index = Arrays.binarySearch(symbols, symbol);
+        return index < 0 ? -1 : index;
+    }
+
+    int indexOf(long operand) {
+        return indexOf(CompactIR.symbol(operand));
+    }
+
+    int symbol(int index) {
+        return symbols[index];
+    }
+}
@@ -0,0 +1,76 @@
+package cn.deepmax.jfx.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public enum Keyword {
+
+    INT("int"),
+    VOID("void"),
+    RETURN("return"),
+    IF("if"),
+    ELSE("else"),
+    DO("do"),
+    WHILE("while"),
+    FOR("for"),
+    BREAK("break"),
+    CONTINUE("continue"),
+    ;
+
+    public final String value;
+    final byte[] bytes;
+    /**
+     * shared token, keywords never allocate while lexing
+     */
+    final Tokens.Keyword token;
+
+    /**
+     * perfect hash over (first byte, last byte, length), no two keywords share a slot
+     */
+    private static final Keyword[] TABLE = new Keyword[16];
+
+    static {
+        for (Keyword k : values()) {
+            int h = hash(ByteBuffer.wrap(k.bytes), 0, k.bytes.length);
+            if (TABLE[h] != null) {
+                throw new IllegalStateException("keyword hash collision " + k + " " + TABLE[h]);
+            }
+            TABLE[h] = k;
+        }
+    }
+
+    Keyword(String value) {
+        this.value = value;
+        this.bytes = value.getBytes(StandardCharsets.US_ASCII);
+        this.token = new Tokens.Keyword(this);
+    }
+
+    private static int hash(ByteBuffer data, int start, int len) {
+        return (data.get(start) + (data.get(start + len - 1) << 3) + len) & 15;
+    }
+
+    /**
+     * @return keyword of data[start, start+len) , or null if not a keyword
+     */
+    public static Keyword lookup(ByteBuffer data, int start, int len) {
+        Keyword k = TABLE[hash(data, start, len)];
+        return k != null && k.matches(data, start, len) ? k : null;
+    }
+
+    boolean matches(ByteBuffer data, int start, int len) {
+        if (bytes.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (data.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -1,28 +1,130 @@
 package cn.deepmax.jfx.lexer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class Lexer {
 
-    final byte[] data;
-    final String txt;
+    private static final int WHITESPACE = 1;
+    private static final int SYMBOL = 2;
+    private static final int OPERAND = 4;
+    private static final int LOGIC = 8;
+    private static final int DIGIT = 16;
+    private static final int WORD = 32;
+    private static final int PUNCT = SYMBOL | OPERAND | LOGIC;
+
+    /**
+     * byte class table, one lookup instead of chains of comparisons
+     */
+    private static final byte[] CLASS = new byte[256];
+
+    static {
+        mark(WHITESPACE, " \t\r\n");
+        mark(SYMBOL, "(){};?:,");
+        mark(OPERAND, "~-+*/%");
+        mark(LOGIC, "!&|<>=");
+        mark(DIGIT | WORD, "0123456789");
+        mark(WORD, "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz_");
+    }
+
+    private static void mark(int cls, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            CLASS[chars.charAt(i)] |= (byte) cls;
+        }
+    }
+
+    /**
+     * SIMD trivia skipping, needs java --add-modules jdk.incubator.vector , -Dvector=false turns it off
+     */
+    static final boolean VECTOR = Boolean.parseBoolean(System.getProperty("vector", "true"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * source bytes, read with absolute gets only, so heap and mapped buffers work the same
+     */
+    final ByteBuffer data;
     private final int len;
     int pos = 0;
-    int lineNumber = 2;
-    boolean firstLine = true;
+    final LineTable lines = new LineTable();
+    /**
+     * a block comment may run past {@link #len}, only for chunks of {@link ParallelLexer}
+     */
+    private final boolean openEnded;
+    /**
+     * null when {@link #VECTOR} is off, the class is never loaded then
+     */
+    private final VectorScan vector;
+
+    /**
+     * current token of {@link #scan()} : data[tokenStart, tokenStart + tokenLength)
+     */
+    int tokenStart;
+    int tokenLength;
+    /**
+     * value of current CONSTANT token
+     */
+    int constantValue;
+    /**
+     * current KEYWORD token
+     */
+    Keyword keyword;
 
     public Lexer(String s) {
-        txt = s;
-        this.data = s.getBytes(StandardCharsets.UTF_8);
-        this.len = this.data.length;
+        this(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Lexer(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    public Lexer(ByteBuffer data) {
+        this(data, 0, data.limit(), false);
+    }
+
+    /**
+     * lexer of data[from, to) , offsets stay absolute
+     */
+    Lexer(ByteBuffer data, int from, int to, boolean openEnded) {
+        this(data, from, to, openEnded, VECTOR);
+    }
+
+    Lexer(ByteBuffer data, int from, int to, boolean openEnded, boolean vectorize) {
+        this.data = data;
+        this.pos = from;
+        this.len = to;
+        this.openEnded = openEnded;
+        this.vector = vectorize ? new VectorScan(data) : null;
+    }
+
+    /**
+     * lex a file through a read-only memory mapping, the source is never copied to the heap
+     */
+    public static Lexer ofFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Lexer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static String text(ByteBuffer source, int start, int length) {
+        byte[] bytes = new byte[length];
+        source.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     String nearSubString() {
         int max = Math.min(len, pos + 10);
-        return txt.substring(pos, max);
+        return text(data, pos, max - pos);
+    }
+
+    public LineTable lineTable() {
+        return lines;
     }
 
     public List<Token> tokenList() {
@@ -36,49 +138,73 @@ public class Lexer {
         return r;
     }
 
-    private Token parseNextTwoSlash() {
-        if (pos + 1 >= len) {
-            return TokenType.DIV;
+    /**
+     * lex the whole input into a compact {@link TokenBuffer}, no token objects are created
+     */
+    public TokenBuffer tokenBuffer() {
+        TokenBuffer buffer = new TokenBuffer(data, lines, len / 8);
+        while (true) {
+            TokenType type = scan();
+            buffer.add(type, tokenStart, tokenLength);
+            if (type == TokenType.EOF) break;
         }
-        var next = data[pos + 1];
+        return buffer;
+    }
 
-        if (next == '/') {
-            pos++;
-            return TokenType.COMMENT_LINE;
-        } else if (next == '*') {
-            pos++;
-            return TokenType.COMMENT_MUL_LINE_START;
-        } else {
-            return TokenType.DIV;
-        }
+    /**
+     * lex the input on a pool, chunk by chunk, see {@link ParallelLexer}.
+     * small inputs are lexed sequentially
+     */
+    public TokenBuffer tokenBuffer(ForkJoinPool pool) {
+        return ParallelLexer.lex(data, pool);
     }
 
-    private Token parseNextTwo(char next, Token single, Token two) {
-        if (pos + 1 < len && data[pos + 1] == next) {
-            pos++;
-            return two;
-        } else {
-            return single;
+    /**
+     * lex one chunk without EOF token
+     *
+     * @param inComment chunk starts inside a block comment
+     */
+    TokenBuffer chunkBuffer(boolean inComment) {
+        TokenBuffer buffer = new TokenBuffer(data, lines, (len - pos) / 8);
+        if (inComment) {
+            skipCommentBody(pos);
+        }
+        while (true) {
+            TokenType type = scan();
+            if (type == TokenType.EOF) break;
+            buffer.add(type, tokenStart, tokenLength);
         }
+        return buffer;
     }
 
     public Token nextToken() {
-        if (firstLine) {
-            firstLine = false;
-            return new Tokens.NewLine(1);
-        }
-        while (pos < len && isWhitespace(data[pos])) {
-            if (isNewLine(data[pos])) {
-                pos++;
-                return new Tokens.NewLine(lineNumber++);
-            } else {
-                pos++;
-            }
+        TokenType type = scan();
+        return switch (type) {
+            case ID -> new Tokens.Id(data, tokenStart, tokenLength);
+            case CONSTANT -> new Tokens.Constant(constantValue);
+            case KEYWORD -> keyword.token;
+            default -> type;
+        };
+    }
+
+    /**
+     * scan next token without allocation.
+     * token text is data[tokenStart, tokenStart + tokenLength),
+     * value goes to {@link #constantValue} for CONSTANT and {@link #keyword} for KEYWORD.
+     * whitespace and comments are skipped, line breaks only go to the {@link LineTable}.
+     *
+     * @return type of the token
+     */
+    TokenType scan() {
+        skipTrivia();
+        tokenStart = pos;
+        if (pos >= len) {
+            tokenLength = 0;
+            return TokenType.EOF;
         }
-        if (pos >= len) return TokenType.EOF;
-        byte cb = data[pos];
-        if (isSymbol(cb) || isOperand(cb) || isLogic(cb)) {
-            Token r = switch (cb) {
+        byte cb = data.get(pos);
+        if ((CLASS[cb & 0xff] & PUNCT) != 0) {
+            TokenType r = switch (cb) {
                 case '(' -> TokenType.OPEN_PARENTHESIS;
                 case ')' -> TokenType.CLOSE_PARENTHESIS;
                 case '{' -> TokenType.OPEN_BRACE;
@@ -88,7 +214,7 @@ public class Lexer {
 
                 case '+' -> TokenType.PLUS;
                 case '*' -> parseNextTwo('/', TokenType.MULTIP, TokenType.COMMENT_MUL_LINE_END);
-                case '/' -> parseNextTwoSlash();
+                case '/' -> TokenType.DIV;
                 case '%' -> TokenType.REMINDER;
 
                 case '-' -> parseNextTwo('-', TokenType.NEG, TokenType.DECREMENT);
@@ -105,86 +231,169 @@ public class Lexer {
                 case ',' -> TokenType.COMMA;
                 default -> throw new LexerException(this, "invalid symbol " + cb);
             };
-            pos++;
             if (r == null) {
-                throw new UnsupportedOperationException("invalid byte " + (char) cb);
+                throw new LexerException(this, "invalid byte " + (char) cb);
             }
+            pos++;
+            tokenLength = pos - tokenStart;
             return r;
         }
-        String value = readUntil(b -> isWhitespace(b) || isSymbol(b) || isOperand(b) || isLogic(b));
-        if (isDigit(cb)) {
-            if (allMatch(value, b -> isDigit(b))) {
-                return new Tokens.Constant(value);
-            } else {
-                throw new IllegalStateException("invalid token " + value);
+        return scanWord();
+    }
+
+    /**
+     * constant, keyword or identifier: everything until whitespace or punctuation
+     */
+    private TokenType scanWord() {
+        int start = pos;
+        int classes = WORD | DIGIT;
+        while (pos < len) {
+            int cls = CLASS[data.get(pos) & 0xff];
+            if ((cls & (WHITESPACE | PUNCT)) != 0) {
+                break;
+            }
+            classes &= cls;
+            pos++;
+        }
+        tokenLength = pos - start;
+        if (isDigit(data.get(start))) {
+            if ((classes & DIGIT) == 0) {
+                throw new LexerException(this, "invalid token " + text(start, tokenLength));
             }
+            constantValue = parseConstant(start, tokenLength);
+            return TokenType.CONSTANT;
         }
-
-        Set<String> KEYWORDS = Set.of("int", "void", "return", "if", "else", "do", "while", "for", "break", "continue");
-        if (KEYWORDS.contains(value)) {
-            return new Tokens.Keyword(value);
+        Keyword k = Keyword.lookup(data, start, tokenLength);
+        if (k != null) {
+            keyword = k;
+            return TokenType.KEYWORD;
         }
+        if ((classes & WORD) == 0) {
+            throw new LexerException(this, "invalid token " + text(start, tokenLength));
+        }
+        return TokenType.ID;
+    }
 
-        boolean allW = allMatch(value, b -> isW(b));
-        if (allW) {
-            return new Tokens.Id(value);
-        } else {
-            throw new UnsupportedOperationException("invalid token " + value);
+    private int parseConstant(int start, int length) {
+        long v = 0;
+        for (int i = start; i < start + length; i++) {
+            v = v * 10 + (data.get(i) - '0');
+            if (v > Integer.MAX_VALUE) {
+                throw new LexerException(this, "constant too large " + text(start, length));
+            }
         }
+        return (int) v;
     }
 
-    interface BytePredicate {
-        boolean test(byte b);
+    private String text(int start, int length) {
+        return text(data, start, length);
+    }
+
+    private void skipTrivia() {
+        while (pos < len) {
+            byte b = data.get(pos);
+            if (isWhitespace(b)) {
+                pos++;
+                if (isNewLine(b)) {
+                    lines.addLineStart(pos);
+                }
+                if (vector != null && pos < len && isWhitespace(data.get(pos))) {
+                    pos = vector.skipWhitespace(pos, len, lines);
+                }
+            } else if (b == '/' && pos + 1 < len && data.get(pos + 1) == '/') {
+                skipLineComment();
+            } else if (b == '/' && pos + 1 < len && data.get(pos + 1) == '*') {
+                skipBlockComment();
+            } else {
+                break;
+            }
+        }
     }
 
-    private boolean allMatch(String s, BytePredicate fn) {
-        if (s == null || s.isBlank()) {
-            throw new LexerException(this, "empty input string");
+    /**
+     * COMMENT_LINE , the line break is left for {@link #skipTrivia()}
+     */
+    private void skipLineComment() {
+        pos += 2;
+        if (vector != null) {
+            pos = vector.skipLineComment(pos, len);
         }
-        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
-        for (byte b : bytes) {
-            if (!fn.test(b)) return false;
+        while (pos < len && !isNewLine(data.get(pos))) {
+            pos++;
         }
-        return true;
     }
 
+    /**
+     * COMMENT_MUL_LINE_START to COMMENT_MUL_LINE_END
+     */
+    private void skipBlockComment() {
+        int begin = pos;
+        pos += 2;
+        skipCommentBody(begin);
+    }
 
-    private String readUntil(BytePredicate until) {
-        int start = pos;
-        while (pos < len && !until.test(data[pos])) {
+    /**
+     * skip to the end of a block comment starting at begin
+     */
+    private void skipCommentBody(int begin) {
+        if (vector != null) {
+            pos = vector.skipCommentBody(pos, len, lines);
+        }
+        while (true) {
+            if (pos + 1 >= len) {
+                if (openEnded) {
+                    if (pos < len && isNewLine(data.get(pos))) {
+                        lines.addLineStart(len);
+                    }
+                    pos = len;
+                    return;
+                }
+                pos = begin;
+                throw new LexerException(this, "unterminated comment");
+            }
+            byte b = data.get(pos);
+            if (b == '*' && data.get(pos + 1) == '/') {
+                pos += 2;
+                return;
+            }
             pos++;
+            if (isNewLine(b)) {
+                lines.addLineStart(pos);
+            }
+        }
+    }
+
+    private TokenType parseNextTwo(char next, TokenType single, TokenType two) {
+        if (pos + 1 < len && data.get(pos + 1) == next) {
+            pos++;
+            return two;
+        } else {
+            return single;
         }
-        byte[] d = new byte[pos - start];
-        System.arraycopy(data, start, d, 0, d.length);
-        return new String(d, StandardCharsets.UTF_8);
     }
 
     static boolean isOperand(byte b) {
-        return b == '~' || b == '-' || b == '+' || b == '*' || b == '/' || b == '%';
+        return (CLASS[b & 0xff] & OPERAND) != 0;
     }
 
     static boolean isLogic(byte b) {
-        return b == '!' || b == '&' || b == '|' || b == '<' || b == '>' || b == '=';
+        return (CLASS[b & 0xff] & LOGIC) != 0;
     }
 
     static boolean isSymbol(byte b) {
-        return b == '(' || b == ')' || b == '{' || b == '}' || b == ';' || b == '?' || b == ':' || b == ',';
+        return (CLASS[b & 0xff] & SYMBOL) != 0;
     }
 
     static boolean isDigit(byte b) {
-        return '0' <= b && b <= '9';
-    }
-
-    static boolean isAlpha(byte b) {
-        return ('A' <= b && b <= 'Z') || ('a' <= b && b <= 'z');
+        return (CLASS[b & 0xff] & DIGIT) != 0;
     }
 
     static boolean isW(byte b) {
-        return isDigit(b) || isAlpha(b) || b == '_';
+        return (CLASS[b & 0xff] & WORD) != 0;
     }
 
     static boolean isWhitespace(byte b) {
-        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+        return (CLASS[b & 0xff] & WHITESPACE) != 0;
     }
 
     static boolean isNewLine(byte b) {
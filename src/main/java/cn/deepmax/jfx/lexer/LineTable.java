@@ -0,0 +1,53 @@
+package cn.deepmax.jfx.lexer;
+
+import java.util.Arrays;
+
+/**
+ * start offset of every source line, filled by the lexer.
+ * line numbers are only computed (binary search) when a diagnostic asks for one.
+ */
+public final class LineTable {
+
+    private int[] starts = new int[64];
+    private int size = 1; //line 1 starts at offset 0
+
+    void addLineStart(int offset) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size << 1);
+        }
+        starts[size++] = offset;
+    }
+
+    /**
+     * append the line starts of other, which must all come after ours
+     */
+    void addAll(LineTable other) {
+        int n = other.size - 1;
+        if (size + n > starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(size + n, size << 1));
+        }
+        System.arraycopy(other.starts, 1, starts, size, n);
+        size += n;
+    }
+
+    public int lineCount() {
+        return size;
+    }
+
+    /**
+     * @return 1-based line number of byte offset
+     */
+    public int lineOf(int offset) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo + 1;
+    }
+}
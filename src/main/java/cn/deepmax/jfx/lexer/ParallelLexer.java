@@ -0,0 +1,161 @@
+package cn.deepmax.jfx.lexer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * chunk-parallel lexing of large inputs.
+ * <ol>
+ *     <li>split the input right after line breaks, so no token and no line comment crosses a chunk</li>
+ *     <li>(parallel) for each chunk compute whether it ends inside a block comment, for both start states</li>
+ *     <li>walk the chunks once to fix the real start state of each chunk</li>
+ *     <li>(parallel) lex every chunk with its start state, then join tokens and line tables in order</li>
+ * </ol>
+ * any lexer error is reported by lexing again sequentially, so diagnostics are the same as {@link Lexer#tokenBuffer()}.
+ */
+final class ParallelLexer {
+
+    /**
+     * smaller chunks are not worth a task
+     */
+    static final int MIN_CHUNK = 256 * 1024;
+
+    private ParallelLexer() {
+    }
+
+    static TokenBuffer lex(ByteBuffer data, ForkJoinPool pool) {
+        int chunk = Math.max(MIN_CHUNK, data.limit() / (pool.getParallelism() * 4));
+        return lex(data, pool, chunk);
+    }
+
+    static TokenBuffer lex(ByteBuffer data, ForkJoinPool pool, int chunkSize) {
+        int[] bounds = split(data, chunkSize);
+        int n = bounds.length - 1;
+        if (n < 2) {
+            return new Lexer(data).tokenBuffer();
+        }
+        try {
+            //exits[2*i + s] : chunk i ends inside a block comment when it starts with state s
+            boolean[] exits = new boolean[2 * n];
+            List<Callable<Void>> scans = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int c = i;
+                scans.add(() -> {
+                    exits[2 * c] = endsInComment(data, bounds[c], bounds[c + 1], false);
+                    exits[2 * c + 1] = c > 0 && endsInComment(data, bounds[c], bounds[c + 1], true);
+                    return null;
+                });
+            }
+            joinAll(pool.invokeAll(scans));
+
+            boolean[] starts = new boolean[n];
+            for (int i = 1; i < n; i++) {
+                starts[i] = exits[2 * (i - 1) + (starts[i - 1] ? 1 : 0)];
+            }
+
+            List<Callable<TokenBuffer>> tasks = new ArrayList<>(n);
+            Lexer[] lexers = new Lexer[n];
+            for (int i = 0; i < n; i++) {
+                int c = i;
+                lexers[c] = new Lexer(data, bounds[c], bounds[c + 1], c < n - 1);
+                tasks.add(() -> lexers[c].chunkBuffer(starts[c]));
+            }
+            List<Future<TokenBuffer>> done = pool.invokeAll(tasks);
+            joinAll(done);
+
+            LineTable lines = new LineTable();
+            int total = 1;
+            for (Future<TokenBuffer> f : done) {
+                total += f.get().size();
+            }
+            TokenBuffer result = new TokenBuffer(data, lines, total);
+            for (int i = 0; i < n; i++) {
+                result.addAll(done.get(i).get());
+                lines.addAll(lexers[i].lines);
+            }
+            result.add(TokenType.EOF, data.limit(), 0);
+            return result;
+        } catch (LexerException e) {
+            return new Lexer(data).tokenBuffer();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static <T> void joinAll(List<Future<T>> futures) throws InterruptedException, ExecutionException {
+        for (Future<T> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LexerException le) {
+                    throw le;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * chunk i is data[bounds[i], bounds[i+1]) , every bound but the last follows a line break
+     */
+    static int[] split(ByteBuffer data, int chunkSize) {
+        int len = data.limit();
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int start = 0;
+        while (start < len) {
+            int end = start + chunkSize;
+            if (end >= len) {
+                end = len;
+            } else {
+                while (end < len && data.get(end - 1) != '\n') {
+                    end++;
+                }
+            }
+            bounds.add(end);
+            start = end;
+        }
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * comment state at the end of data[from, to) , following the lexer:
+     * outside a comment "*&#47;" is one token, "//" runs to the line break, "/*" opens a comment
+     */
+    static boolean endsInComment(ByteBuffer data, int from, int to, boolean inComment) {
+        int p = from;
+        while (p < to) {
+            byte b = data.get(p);
+            boolean pair = p + 1 < to;
+            if (inComment) {
+                if (b == '*' && pair && data.get(p + 1) == '/') {
+                    inComment = false;
+                    p += 2;
+                } else {
+                    p++;
+                }
+            } else if (b == '/' && pair && data.get(p + 1) == '/') {
+                p += 2;
+                while (p < to && data.get(p) != '\n') {
+                    p++;
+                }
+            } else if (b == '/' && pair && data.get(p + 1) == '*') {
+                inComment = true;
+                p += 2;
+            } else if (b == '*' && pair && data.get(p + 1) == '/') {
+                p += 2;
+            } else {
+                p++;
+            }
+        }
+        return inComment;
+    }
+}
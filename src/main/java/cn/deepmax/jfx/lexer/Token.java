@@ -10,4 +10,8 @@ public interface Token {
         return type() == TokenType.KEYWORD && params().toString().equals(word);
     }
 
+    default boolean isKeyword(Keyword word) {
+        return false;
+    }
+
 }
@@ -0,0 +1,131 @@
+package cn.deepmax.jfx.lexer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * compact token stream: parallel arrays of kind, start offset and length, indexed by token position.
+ * token text stays in the source buffer, line numbers come from the {@link LineTable}.
+ */
+public final class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final ByteBuffer source;
+    private final LineTable lines;
+    private int[] kind;
+    private int[] start;
+    private int[] length;
+    private int size;
+
+    TokenBuffer(ByteBuffer source, LineTable lines, int capacity) {
+        this.source = source;
+        this.lines = lines;
+        int c = Math.max(16, capacity);
+        this.kind = new int[c];
+        this.start = new int[c];
+        this.length = new int[c];
+    }
+
+    void add(TokenType type, int tokenStart, int tokenLength) {
+        if (size == kind.length) {
+            int c = size + (size >> 1);
+            kind = Arrays.copyOf(kind, c);
+            start = Arrays.copyOf(start, c);
+            length = Arrays.copyOf(length, c);
+        }
+        kind[size] = type.ordinal();
+        start[size] = tokenStart;
+        length[size] = tokenLength;
+        size++;
+    }
+
+    /**
+     * append all tokens of other , used to join chunks lexed in parallel
+     */
+    void addAll(TokenBuffer other) {
+        int need = size + other.size;
+        if (need > kind.length) {
+            kind = Arrays.copyOf(kind, need);
+            start = Arrays.copyOf(start, need);
+            length = Arrays.copyOf(length, need);
+        }
+        System.arraycopy(other.kind, 0, kind, size, other.size);
+        System.arraycopy(other.start, 0, start, size, other.size);
+        System.arraycopy(other.length, 0, length, size, other.size);
+        size = need;
+    }
+
+    public LineTable lineTable() {
+        return lines;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int i) {
+        return TYPES[kind[i]];
+    }
+
+    public int start(int i) {
+        return start[i];
+    }
+
+    public int length(int i) {
+        return length[i];
+    }
+
+    public int line(int i) {
+        return lines.lineOf(start[i]);
+    }
+
+    /**
+     * @return keyword of token i, null if token i is not a keyword
+     */
+    public Keyword keyword(int i) {
+        if (kind[i] != TokenType.KEYWORD.ordinal()) {
+            return null;
+        }
+        return Keyword.lookup(source, start[i], length[i]);
+    }
+
+    public boolean isKeyword(int i, Keyword k) {
+        return kind[i] == TokenType.KEYWORD.ordinal() && k.matches(source, start[i], length[i]);
+    }
+
+    /**
+     * value of CONSTANT token i, digits are already checked by the lexer
+     */
+    public int constantValue(int i) {
+        int v = 0;
+        for (int p = start[i], end = start[i] + length[i]; p < end; p++) {
+            v = v * 10 + (source.get(p) - '0');
+        }
+        return v;
+    }
+
+    public String text(int i) {
+        return Lexer.text(source, start[i], length[i]);
+    }
+
+    public String describe(int i) {
+        TokenType type = type(i);
+        return switch (type) {
+            case ID -> "Id[" + text(i) + "]";
+            case CONSTANT -> "Constant[" + text(i) + "]";
+            case KEYWORD -> "Keyword[" + text(i) + "]";
+            default -> type.toString();
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(describe(i));
+        }
+        return sb.append("]").toString();
+    }
+}
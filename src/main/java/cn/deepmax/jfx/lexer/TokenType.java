@@ -42,7 +42,6 @@ public enum TokenType implements Token {
     COMMENT_LINE("//"),
     COMMENT_MUL_LINE_START("/*"),
     COMMENT_MUL_LINE_END("*/"),
-    NEWLINE,
     EOF,
     ;
 
@@ -69,12 +68,11 @@ public enum TokenType implements Token {
         return prec.intValue();
     }
 
+    /**
+     * infix operators are exactly the tokens with a precedence
+     */
     public boolean isBinaryOp() {
-        return this == PLUS || this == MULTIP || this == DIV || this == REMINDER || this == NEG ||
-                this == LESS_THAN || this == LESS_THAN_OR_EQ || this == GREATER_THAN || this == GREATER_THAN_OR_EQ ||
-                this == EQUAL_TO || this == NOT_EQUAL_TO || this == AND || this == OR ||
-                this == ASSIGNMENT ||
-                this == QUESTION;
+        return prec != null;
     }
 
 
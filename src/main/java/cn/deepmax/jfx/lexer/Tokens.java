@@ -1,62 +1,87 @@
 package cn.deepmax.jfx.lexer;
 
+import java.nio.ByteBuffer;
+
 public class Tokens {
     private Tokens() {
     }
 
-    public static class Id extends StringBase {
-        public Id(String name) {
-            super(TokenType.ID, name);
+    /**
+     * identifier , references the source buffer and only decodes the name when asked
+     */
+    public static class Id implements Token {
+        private final ByteBuffer source;
+        private final int start;
+        private final int length;
+        private StringTokenParam name;
+
+        public Id(ByteBuffer source, int start, int length) {
+            this.source = source;
+            this.start = start;
+            this.length = length;
         }
-    }
 
-    public static class Constant extends StringBase {
-        public Constant(String value) {
-            super(TokenType.CONSTANT, value);
+        public String name() {
+            return params().toString();
         }
-    }
 
-    public static class Keyword extends StringBase {
-        public Keyword(String value) {
-            super(TokenType.KEYWORD, value);
+        @Override
+        public TokenType type() {
+            return TokenType.ID;
+        }
+
+        @Override
+        public TokenParams params() {
+            if (name == null) {
+                name = new StringTokenParam(Lexer.text(source, start, length));
+            }
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "Id[" + name() + "]";
         }
     }
 
-    public static class NewLine implements Token {
-        public final int lineNumber;
+    public static class Constant implements Token {
+        public final int value;
 
-        public NewLine(int lineNumber) {
-            this.lineNumber = lineNumber;
+        public Constant(int value) {
+            this.value = value;
         }
 
         @Override
         public TokenType type() {
-            return TokenType.NEWLINE;
+            return TokenType.CONSTANT;
         }
 
         @Override
         public TokenParams params() {
-            return new IntTokenParam(this.lineNumber);
+            return new IntTokenParam(value);
         }
 
         @Override
         public String toString() {
-            return "NewLine(" + lineNumber + ")";
+            return "Constant[" + value + "]";
         }
     }
 
-    public static class StringBase implements Token {
-        public final TokenType type;
+    /**
+     * one shared instance per {@link cn.deepmax.jfx.lexer.Keyword}
+     */
+    public static class Keyword implements Token {
+        public final cn.deepmax.jfx.lexer.Keyword keyword;
         private final StringTokenParam value;
 
-        public StringBase(TokenType type, String value) {
-            this.type = type;
-            this.value = new StringTokenParam(value);
+        Keyword(cn.deepmax.jfx.lexer.Keyword keyword) {
+            this.keyword = keyword;
+            this.value = new StringTokenParam(keyword.value);
         }
 
         @Override
         public TokenType type() {
-            return type;
+            return TokenType.KEYWORD;
         }
 
         @Override
@@ -64,9 +89,14 @@ public class Tokens {
             return value;
         }
 
+        @Override
+        public boolean isKeyword(cn.deepmax.jfx.lexer.Keyword word) {
+            return keyword == word;
+        }
+
         @Override
         public String toString() {
-            return String.format("%s[%s]", this.getClass().getSimpleName(), value.toString());
+            return "Keyword[" + keyword.value + "]";
         }
     }
 
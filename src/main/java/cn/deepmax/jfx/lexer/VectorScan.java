@@ -0,0 +1,108 @@
+package cn.deepmax.jfx.lexer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SIMD fast path of trivia skipping, classifies {@link #LANES} bytes per step.
+ * only loaded when jdk.incubator.vector is in the boot layer, see {@link Lexer#VECTOR}.
+ * every method only advances over bytes it has fully classified, the scalar loop of {@link Lexer} does the rest.
+ */
+final class VectorScan {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    static final int LANES = SPECIES.length();
+
+    private final ByteBuffer data;
+    /**
+     * backing array of heap buffers, null for mapped buffers which are bulk copied into {@link #block}
+     */
+    private final byte[] array;
+    private final int arrayOffset;
+    private final byte[] block = new byte[LANES];
+
+    VectorScan(ByteBuffer data) {
+        this.data = data;
+        if (data.hasArray()) {
+            this.array = data.array();
+            this.arrayOffset = data.arrayOffset();
+        } else {
+            this.array = null;
+            this.arrayOffset = 0;
+        }
+    }
+
+    private ByteVector load(int pos) {
+        if (array != null) {
+            return ByteVector.fromArray(SPECIES, array, arrayOffset + pos);
+        }
+        data.get(pos, block);
+        return ByteVector.fromArray(SPECIES, block, 0);
+    }
+
+    /**
+     * @return offset of the first non whitespace byte after pos, or where less than {@link #LANES} bytes are left
+     */
+    int skipWhitespace(int pos, int end, LineTable lines) {
+        while (pos + LANES <= end) {
+            ByteVector v = load(pos);
+            VectorMask<Byte> nl = v.eq((byte) '\n');
+            VectorMask<Byte> ws = nl.or(v.eq((byte) ' ')).or(v.eq((byte) '\t')).or(v.eq((byte) '\r'));
+            int run = ws.not().firstTrue();
+            addLineStarts(lines, pos, nl.toLong() & lowBits(run));
+            pos += run;
+            if (run < LANES) break;
+        }
+        return pos;
+    }
+
+    /**
+     * @return offset of the first line break after pos, or where less than {@link #LANES} bytes are left
+     */
+    int skipLineComment(int pos, int end) {
+        while (pos + LANES <= end) {
+            int i = load(pos).eq((byte) '\n').firstTrue();
+            pos += i;
+            if (i < LANES) break;
+        }
+        return pos;
+    }
+
+    /**
+     * inside a block comment
+     *
+     * @return offset of the first '*' followed by '/' after pos, or where less than {@link #LANES} + 1 bytes are left
+     */
+    int skipCommentBody(int pos, int end, LineTable lines) {
+        while (pos + LANES < end) {
+            ByteVector v = load(pos);
+            long stars = v.eq((byte) '*').toLong();
+            long nl = v.eq((byte) '\n').toLong();
+            while (stars != 0) {
+                int i = Long.numberOfTrailingZeros(stars);
+                if (data.get(pos + i + 1) == '/') {
+                    addLineStarts(lines, pos, nl & lowBits(i));
+                    return pos + i;
+                }
+                stars &= stars - 1;
+            }
+            addLineStarts(lines, pos, nl);
+            pos += LANES;
+        }
+        return pos;
+    }
+
+    private static long lowBits(int n) {
+        return n >= 64 ? -1L : (1L << n) - 1;
+    }
+
+    private static void addLineStarts(LineTable lines, int base, long newLines) {
+        while (newLines != 0) {
+            lines.addLineStart(base + Long.numberOfTrailingZeros(newLines) + 1);
+            newLines &= newLines - 1;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cn.deepmax.jfx.parse;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * resolver results kept beside the parsed AST instead of rebuilding it, see {@link Resolver#annotateProgram}.
+ * keyed by node identity, AST records compare by value and two uses of "a" are different nodes.
+ */
+public final class Annotations {
+
+    /**
+     * symbol of Var, VarDeclare and VarParam nodes, see {@link cn.deepmax.jfx.Symbols}
+     */
+    private final Map<Object, Integer> symbols = new IdentityHashMap<>();
+    /**
+     * loop label of While, DoWhile, For, Break and Continue nodes
+     */
+    private final Map<AstNode.Statement, String> labels = new IdentityHashMap<>();
+
+    void putSymbol(Object node, int symbol) {
+        symbols.put(node, symbol);
+    }
+
+    void putLabel(AstNode.Statement node, String label) {
+        labels.put(node, label);
+    }
+
+    /**
+     * shift all symbols and the numeric suffix of all labels, "Loop.3" becomes "Loop.(3 + labelBase)"
+     */
+    void rebase(int symbolBase, int labelBase) {
+        if (symbolBase != 0) {
+            symbols.replaceAll((node, symbol) -> symbol + symbolBase);
+        }
+        if (labelBase != 0) {
+            labels.replaceAll((node, label) -> rebase(label, labelBase));
+        }
+    }
+
+    static String rebase(String name, long base) {
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot + 1) + (Long.parseLong(name, dot + 1, name.length(), 10) + base);
+    }
+
+    void addAll(Annotations other) {
+        symbols.putAll(other.symbols);
+        labels.putAll(other.labels);
+    }
+
+    public int symbolOf(Ast.Var v) {
+        return symbols.get(v);
+    }
+
+    public int symbolOf(Ast.VarDeclare d) {
+        return symbols.get(d);
+    }
+
+    public int symbolOf(Ast.VarParam p) {
+        return symbols.get(p);
+    }
+
+    /**
+     * @return loop label, null if the statement is not a loop, break or continue
+     */
+    public String labelOf(AstNode.Statement statement) {
+        return labels.get(statement);
+    }
+}
@@ -1,77 +1,97 @@
 package cn.deepmax.jfx.parse;
 
+import cn.deepmax.jfx.CompilationContext;
 import cn.deepmax.jfx.exception.SemanticException;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * handle variable declare and scope
+ * handle variable declare and scope.
+ * a scope only holds what is declared in it and links to its parent, nothing is copied on {@link #newScope()}.
+ * entries of the own maps are the "current scope" ones, outer entries are found by walking the parents.
  */
 public class Identifiers {
 
-    Map<String, Entry> funMap = new HashMap<>();
-    Map<String, VarEntry> varMap = new HashMap<>();
+    /**
+     * declared in this scope, created on first put
+     */
+    private Map<String, Entry> funMap;
+    private Map<String, VarEntry> varMap;
 
     Identifiers parent;
-    static final AtomicLong seq = new AtomicLong(0);
+    private final CompilationContext context;
+
+    public Identifiers(CompilationContext context) {
+        this.context = context;
+    }
 
     public void checkVar(String varRawId) {
-        VarEntry varEntry = varMap.get(varRawId);
+        VarEntry varEntry = ownVar(varRawId);
         if (varEntry != null && varEntry.currentScope) {
             throw new SemanticException("Duplicate variable declaration! id = " + varRawId);
         }
-        Entry funEntry = funMap.get(varRawId);
+        Entry funEntry = funMap == null ? null : funMap.get(varRawId);
         if (funEntry != null && funEntry.currentScope) {
             throw new SemanticException("Id redeclared as different kind of symbol! id = " + varRawId);
         }
     }
 
-    public static int currentNumber() {
-        return (int) seq.get();
-    }
-
-    public String mappingToReplacement(String rawId) {
-        var entry = varMap.get(rawId);
-        return entry == null ? null : entry.replacedName;
-    }
-
-    public static long nextId() {
-        return seq.getAndIncrement();
+    /**
+     * @return symbol of the innermost variable rawId, -1 if undeclared
+     */
+    public int symbolOf(String rawId) {
+        for (Identifiers scope = this; scope != null; scope = scope.parent) {
+            VarEntry entry = scope.ownVar(rawId);
+            if (entry != null) {
+                return entry.symbol;
+            }
+        }
+        return -1;
     }
 
-    public String putVar(String identifier, boolean currentBlock) {
-        String replacedName = identifier + "." + Identifiers.nextId();
-        varMap.put(identifier, new VarEntry(replacedName, currentBlock));
-        return replacedName;
+    /**
+     * @return new symbol of the variable
+     */
+    public int putVar(String identifier, boolean currentBlock) {
+        int symbol = context.symbols().add(identifier);
+        if (varMap == null) {
+            varMap = new HashMap<>(4);
+        }
+        varMap.put(identifier, new VarEntry(symbol, currentBlock));
+        return symbol;
     }
 
     public void putFunc(String identifier, Ast.FunctionDeclare fn) {
-        VarEntry varEntry = varMap.get(identifier);
+        VarEntry varEntry = ownVar(identifier);
         if (varEntry != null && varEntry.currentScope) {
             throw new SemanticException("Variable redeclared as function!" + identifier);
         }
+        if (funMap == null) {
+            funMap = new HashMap<>(4);
+        }
         funMap.put(identifier, new Entry(true, true, fn));
     }
 
     public Identifiers newScope() {
-        Identifiers r = new Identifiers();
-        funMap.forEach((k, v) -> r.funMap.put(k, new Entry(false, v.hasLinkage, v.functionDeclare)));
-        varMap.forEach((k, v) -> r.varMap.put(k, new VarEntry(v.replacedName, false)));
+        Identifiers r = new Identifiers(context);
         r.parent = this;
         return r;
     }
 
     public void checkFunCallName(String identifier) {
 
-        var en = varMap.get(identifier);
+        var en = ownVar(identifier);
         if (en != null && en.currentScope) {
             throw new SemanticException("Variable used as function name " + identifier);
         }
     }
 
-    public record VarEntry(String replacedName, boolean currentScope) {
+    private VarEntry ownVar(String rawId) {
+        return varMap == null ? null : varMap.get(rawId);
+    }
+
+    public record VarEntry(int symbol, boolean currentScope) {
 
     }
 
@@ -1,13 +1,19 @@
 package cn.deepmax.jfx.parse;
 
+import cn.deepmax.jfx.CompilationContext;
+
 public class Labels {
 
-    private static int id = 0;
+    private final CompilationContext context;
 
     Labels parent;
 
     String labelValue;
 
+    public Labels(CompilationContext context) {
+        this.context = context;
+    }
+
     boolean noLabel() {
         return labelValue == null;
     }
@@ -21,8 +27,8 @@ public class Labels {
     }
 
     public Labels makeTempLabel() {
-        String l = "Loop." + id++;
-        Labels labels = new Labels();
+        String l = "Loop." + context.nextLoopLabelId();
+        Labels labels = new Labels(context);
         labels.labelValue = l;
         labels.parent = this;
         return labels;
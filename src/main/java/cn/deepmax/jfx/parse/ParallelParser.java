@@ -0,0 +1,130 @@
+package cn.deepmax.jfx.parse;
+
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.lexer.TokenBuffer;
+import cn.deepmax.jfx.lexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * parse top-level function declarations on a pool.
+ * a brace-depth scan over the token stream finds where every top-level item ends,
+ * then batches of items are parsed by their own {@link Parser} cursor and joined in source order.
+ * on any parse error or boundary mismatch the caller parses sequentially, so diagnostics stay the same.
+ */
+final class ParallelParser {
+
+    /**
+     * smaller inputs are parsed sequentially
+     */
+    static final int MIN_TOKENS = 1 << 14;
+
+    private ParallelParser() {
+    }
+
+    /**
+     * @return functions in source order, null if the input has to be parsed sequentially
+     */
+    static List<Ast.FunctionDeclare> parse(TokenBuffer tokens, CompilationContext context, ForkJoinPool pool) {
+        if (tokens.size() < MIN_TOKENS) {
+            return null;
+        }
+        return parse(tokens, context, pool, pool.getParallelism() * 4);
+    }
+
+    static List<Ast.FunctionDeclare> parse(TokenBuffer tokens, CompilationContext context, ForkJoinPool pool, int batches) {
+        int[] bounds = topLevelBounds(tokens);
+        if (bounds == null || bounds.length < 3) {
+            return null;
+        }
+        int items = bounds.length - 1;
+        int n = Math.min(batches, items);
+        List<Callable<List<Ast.FunctionDeclare>>> tasks = new ArrayList<>(n);
+        for (int b = 0; b < n; b++) {
+            int from = (int) ((long) b * items / n);
+            int to = (int) ((long) (b + 1) * items / n);
+            tasks.add(() -> parseItems(tokens, context, bounds, from, to));
+        }
+        List<Ast.FunctionDeclare> result = new ArrayList<>(items);
+        try {
+            for (Future<List<Ast.FunctionDeclare>> f : pool.invokeAll(tasks)) {
+                List<Ast.FunctionDeclare> part = f.get();
+                if (part == null) {
+                    return null;
+                }
+                result.addAll(part);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * parse items [from, to) , each must end exactly at its bound
+     */
+    private static List<Ast.FunctionDeclare> parseItems(TokenBuffer tokens, CompilationContext context,
+                                                        int[] bounds, int from, int to) {
+        Parser parser = new Parser(tokens, bounds[from], context);
+        List<Ast.FunctionDeclare> list = new ArrayList<>(to - from);
+        try {
+            for (int i = from; i < to; i++) {
+                Ast.FunctionDeclare f = parser.parseFunctionDeclaration();
+                if (f == null || parser.pos != bounds[i + 1] - 1) {
+                    return null;
+                }
+                list.add(f);
+            }
+        } catch (RuntimeException e) {
+            //reported by the sequential parse
+            return null;
+        }
+        return list;
+    }
+
+    /**
+     * item i is tokens [bounds[i], bounds[i+1]) , it ends with a ';' or a '}' at brace depth 0.
+     * the last bound is the EOF token
+     *
+     * @return null if braces do not match
+     */
+    static int[] topLevelBounds(TokenBuffer tokens) {
+        int eof = tokens.size() - 1;
+        int[] bounds = new int[64];
+        int count = 1;
+        int depth = 0;
+        for (int i = 0; i < eof; i++) {
+            TokenType type = tokens.type(i);
+            if (type == TokenType.OPEN_BRACE) {
+                depth++;
+                continue;
+            }
+            if (type == TokenType.CLOSE_BRACE) {
+                if (--depth < 0) {
+                    return null;
+                }
+            } else if (type != TokenType.SEMICOLON || depth > 0) {
+                continue;
+            }
+            if (depth == 0) {
+                if (count == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, count << 1);
+                }
+                bounds[count++] = i + 1;
+            }
+        }
+        if (bounds[count - 1] != eof) {
+            return null;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+}
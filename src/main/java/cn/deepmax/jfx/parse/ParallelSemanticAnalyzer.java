@@ -0,0 +1,205 @@
+package cn.deepmax.jfx.parse;
+
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.Symbols;
+import cn.deepmax.jfx.exception.SemanticException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * analyze top-level function declarations on a pool.
+ * a sequential pre-pass declares the top-level signatures only and keeps what is visible where every batch starts,
+ * then every batch of declarations is analyzed with its own {@link SemanticAnalyzer}, context and {@link UnitTable}.
+ * symbols and loop labels of a batch count from 0 and are rebased by the ids the batches before it took,
+ * the symbol table is rebuilt by replaying the declarations and variables of all batches in source order.
+ * on any error the caller analyzes sequentially, so diagnostics stay the same.
+ */
+final class ParallelSemanticAnalyzer {
+
+    /**
+     * programs with fewer top-level declarations are analyzed sequentially
+     */
+    static final int MIN_FUNCTIONS = 256;
+
+    private ParallelSemanticAnalyzer() {
+    }
+
+    /**
+     * @return annotations of the whole program, null if it has to be analyzed sequentially
+     */
+    static Annotations analyze(Ast.AstProgram program, CompilationContext context, SymbolTable table, ForkJoinPool pool) {
+        if (program.functionDeclarations().size() < MIN_FUNCTIONS) {
+            return null;
+        }
+        return analyze(program, context, table, pool, pool.getParallelism() * 4);
+    }
+
+    static Annotations analyze(Ast.AstProgram program, CompilationContext context, SymbolTable table,
+                               ForkJoinPool pool, int batches) {
+        List<Ast.FunctionDeclare> functions = program.functionDeclarations();
+        int n = Math.min(batches, functions.size());
+        if (n < 2) {
+            return null;
+        }
+        int[] starts = new int[n + 1];
+        for (int b = 0; b <= n; b++) {
+            starts[b] = (int) ((long) b * functions.size() / n);
+        }
+
+        List<Map<String, TypeDef.Type>> visible = new ArrayList<>(n);
+        SymbolTable signatures = new SymbolTable();
+        try {
+            for (int b = 0; b < n; b++) {
+                visible.add(Map.copyOf(signatures.globalTable));
+                for (int i = starts[b]; i < starts[b + 1]; i++) {
+                    signatures.declareFunction(functions.get(i));
+                }
+            }
+        } catch (SemanticException e) {
+            return null;
+        }
+
+        List<Callable<Batch>> tasks = new ArrayList<>(n);
+        for (int b = 0; b < n; b++) {
+            List<Ast.FunctionDeclare> part = functions.subList(starts[b], starts[b + 1]);
+            Map<String, TypeDef.Type> before = visible.get(b);
+            tasks.add(() -> analyzeBatch(part, before));
+        }
+        List<Batch> done = invokeAll(pool, tasks);
+        if (done == null) {
+            return null;
+        }
+
+        int symbolBase = context.symbols().size();
+        int labelBase = context.loopLabelIds();
+        List<Callable<Batch>> rebases = new ArrayList<>(n);
+        for (Batch batch : done) {
+            batch.symbolBase = symbolBase;
+            batch.labelBase = labelBase;
+            symbolBase += batch.symbols.size();
+            labelBase += batch.labels;
+            rebases.add(() -> {
+                batch.annotations.rebase(batch.symbolBase, batch.labelBase);
+                return batch;
+            });
+        }
+        if (invokeAll(pool, rebases) == null) {
+            return null;
+        }
+
+        SymbolTable merged = new SymbolTable();
+        try {
+            for (Batch batch : done) {
+                for (Object event : batch.table.events) {
+                    switch (event) {
+                        case Ast.FunctionDeclare f -> merged.declareFunction(f);
+                        case Local l -> merged.putVariable(l.fun(), l.symbol() + batch.symbolBase);
+                        default -> throw new IllegalStateException(event.toString());
+                    }
+                }
+            }
+        } catch (SemanticException e) {
+            return null;
+        }
+
+        Annotations result = new Annotations();
+        for (Batch batch : done) {
+            result.addAll(batch.annotations);
+        }
+        table.globalTable.putAll(merged.globalTable);
+        table.variables.or(merged.variables);
+        for (Batch batch : done) {
+            context.symbols().addAll(batch.symbols);
+        }
+        context.nextLoopLabelIds(labelBase - context.loopLabelIds());
+        return result;
+    }
+
+    private static Batch analyzeBatch(List<Ast.FunctionDeclare> functions, Map<String, TypeDef.Type> visible) {
+        CompilationContext local = new CompilationContext();
+        UnitTable table = new UnitTable(visible);
+        Annotations annotations = new SemanticAnalyzer(local, table).analyzeProgram(new Ast.AstProgram(functions));
+        return new Batch(annotations, table, local.symbols(), local.loopLabelIds());
+    }
+
+    /**
+     * @return results in task order, null if any task failed
+     */
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<T> result = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> f : pool.invokeAll(tasks)) {
+                result.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            return null;
+        }
+        return result;
+    }
+
+    private static final class Batch {
+        final Annotations annotations;
+        final UnitTable table;
+        /**
+         * symbols and loop label ids taken by the batch
+         */
+        final Symbols symbols;
+        final int labels;
+        int symbolBase;
+        int labelBase;
+
+        Batch(Annotations annotations, UnitTable table, Symbols symbols, int labels) {
+            this.annotations = annotations;
+            this.table = table;
+            this.symbols = symbols;
+            this.labels = labels;
+        }
+    }
+
+    /**
+     * variable of a function, in its batch's numbering
+     */
+    private record Local(String fun, int symbol) {
+    }
+
+    /**
+     * symbol table of one batch, looks up the signatures visible at the batch start when it does not know a name.
+     * records what the batch declares for the replay
+     */
+    static final class UnitTable extends SymbolTable {
+
+        private final Map<String, TypeDef.Type> visible;
+        private final List<Object> events = new ArrayList<>();
+
+        UnitTable(Map<String, TypeDef.Type> visible) {
+            this.visible = visible;
+        }
+
+        @Override
+        public void declareFunction(Ast.FunctionDeclare f) {
+            events.add(f);
+            super.declareFunction(f);
+        }
+
+        @Override
+        public void putVariable(String funcName, int symbol) {
+            events.add(new Local(funcName, symbol));
+            super.putVariable(funcName, symbol);
+        }
+
+        @Override
+        public TypeDef.Type get(String id) {
+            TypeDef.Type type = super.get(id);
+            return type != null ? type : visible.get(id);
+        }
+    }
+}
@@ -1,36 +1,73 @@
 package cn.deepmax.jfx.parse;
 
+import cn.deepmax.jfx.CompilationContext;
 import cn.deepmax.jfx.lexer.*;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 主要是 recursive dscent parsing 解析
- * 中间有部分是： precedence climbing
- * 还有个技术是 pratt parsing ，听说和上面的是等价
+ * 表达式部分是 pratt parsing（和 precedence climbing 等价），用显式栈代替递归
  */
 public class Parser {
-    public final List<Token> tokenList;
-    int pos = 0;
+    public final TokenBuffer tokens;
+    /**
+     * index of the last consumed token
+     */
+    int pos = -1;
     private final int len;
 
-    public final Resolver resolver = new Resolver();
-    private Token currentLine;
+    public final CompilationContext context;
+    public final Resolver resolver;
 
     public Parser(Lexer lexer) {
-        this.tokenList = lexer.tokenList();
-        this.len = this.tokenList.size();
+        this(lexer.tokenBuffer());
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this(tokens, new CompilationContext());
+    }
+
+    public Parser(TokenBuffer tokens, CompilationContext context) {
+        this(tokens, 0, context);
+    }
+
+    /**
+     * cursor starting at token from
+     */
+    Parser(TokenBuffer tokens, int from, CompilationContext context) {
+        this.tokens = tokens;
+        this.len = this.tokens.size();
+        this.pos = from - 1;
+        this.context = context;
+        this.resolver = new Resolver(context);
     }
 
     public Ast.AstProgram parseProgram() {
         List<Ast.FunctionDeclare> funcs = parseFunctionDeclarationList();
         Ast.AstProgram p = new Ast.AstProgram(funcs);
 
-        expect(TokenType.EOF, NoneParams.NONE);
+        expect(TokenType.EOF);
         return p;
     }
 
+    /**
+     * parse top-level functions on a pool, see {@link ParallelParser}.
+     * small or malformed inputs are parsed sequentially
+     */
+    public Ast.AstProgram parseProgram(ForkJoinPool pool) {
+        List<Ast.FunctionDeclare> funcs = ParallelParser.parse(tokens, context, pool);
+        if (funcs == null) {
+            return parseProgram();
+        }
+        pos = len - 1;
+        return new Ast.AstProgram(funcs);
+    }
+
     public List<Ast.FunctionDeclare> parseFunctionDeclarationList() {
         List<Ast.FunctionDeclare> result = new ArrayList<>();
         Ast.FunctionDeclare it;
@@ -40,17 +77,17 @@ public class Parser {
         return result;
     }
 
-    private Ast.FunctionDeclare parseFunctionDeclaration() {
+    Ast.FunctionDeclare parseFunctionDeclaration() {
         if (getNextToken() == TokenType.EOF) {
             return null;
         }
-        expect(TokenType.KEYWORD, new StringTokenParam("int"));
-        Token idToken = expect(TokenType.ID, null);
+        expectKeyword(Keyword.INT);
+        int idToken = expect(TokenType.ID);
 
-        expect(TokenType.OPEN_PARENTHESIS, NoneParams.NONE);
+        expect(TokenType.OPEN_PARENTHESIS);
         var paramList = parseParamList();
-        expect(TokenType.CLOSE_PARENTHESIS, NoneParams.NONE);
-        Token nextToken = getNextToken();
+        expect(TokenType.CLOSE_PARENTHESIS);
+        TokenType nextToken = getNextToken();
 
         Ast.Block block = null;
         if (nextToken == TokenType.SEMICOLON) {
@@ -60,12 +97,12 @@ public class Parser {
             //definite
             List<AstNode.BlockItem> fnBody = new ArrayList<>();
 
-            expect(TokenType.OPEN_BRACE, NoneParams.NONE);
+            expect(TokenType.OPEN_BRACE);
             parseFunctionBody(fnBody);
-            expect(TokenType.CLOSE_BRACE, NoneParams.NONE);
+            expect(TokenType.CLOSE_BRACE);
             block = new Ast.Block(fnBody);
         }
-        return new Ast.FunctionDeclare(idToken.params().toString(), paramList, block);
+        return new Ast.FunctionDeclare(tokens.text(idToken), paramList, block);
     }
 
     /**
@@ -75,7 +112,7 @@ public class Parser {
      */
     private List<AstNode.Param> parseParamList() {
         List<AstNode.Param> list = new ArrayList<>();
-        Token next;
+        TokenType next;
         while (true) {
             next = getNextToken();
             if (next == TokenType.CLOSE_PARENTHESIS) {
@@ -88,26 +125,26 @@ public class Parser {
                 moveNext();
                 next = getNextToken();
             }
-            if (next.isKeyword("void")) {
+            if (nextIsKeyword(Keyword.VOID)) {
                 if (list.isEmpty()) {
                     moveNext();
                     return list;
                 } else {
                     throw new ParseException(this, "Function not pure void");
                 }
-            } else if (next.isKeyword("int")) {
+            } else if (nextIsKeyword(Keyword.INT)) {
                 moveNext();
                 var nx = getNextToken();
-                if (nx.type() == TokenType.ID) {
-                    Token id = expect(TokenType.ID, null);
-                    list.add(new Ast.VarParam("int", id.params().toString()));
+                if (nx == TokenType.ID) {
+                    int id = expect(TokenType.ID);
+                    list.add(new Ast.VarParam("int", tokens.text(id)));
                 } else if (nx == TokenType.COMMA || nx == TokenType.CLOSE_PARENTHESIS) {
                     list.add(new Ast.VarParam("int", null));
                 } else {
                     throw new ParseException(this, "expect id|comma|) , but got " + nx);
                 }
             } else {
-                throw new ParseException(this, "expect keyword[void] or keyword[int] ,but got " + next);
+                throw new ParseException(this, "expect keyword[void] or keyword[int] ,but got " + tokens.describe(peekIndex()));
             }
         }
         return list;
@@ -122,15 +159,14 @@ public class Parser {
 
     //blockItem ::= <statement> | <declaration>
     private AstNode.BlockItem parseBlockItem() {
-        Token nextToken = getNextToken();
-        if (nextToken.isKeyword("int")) {
+        if (nextIsKeyword(Keyword.INT)) {
             //declaration
             moveNext();
-            Token id = expect(TokenType.ID, null);
+            String id = tokens.text(expect(TokenType.ID));
             var next = getNextToken();
             AstNode.Declaration declaration = next == TokenType.OPEN_PARENTHESIS ?
-                    parseFuncDeclaration((Tokens.Id) id) :
-                    parseVarDeclaration((Tokens.Id) id, next);
+                    parseFuncDeclaration(id) :
+                    parseVarDeclaration(id, next);
 
             return new Ast.DeclareBlockItem(declaration);
         }
@@ -138,16 +174,16 @@ public class Parser {
         return new Ast.StatementBlockItem(statement);
     }
 
-    private AstNode.Declaration parseFuncDeclaration(Tokens.Id id) {
+    private AstNode.Declaration parseFuncDeclaration(String id) {
         moveNext();
         //parse param list
         List<AstNode.Param> params = parseParamList();
-        expect(TokenType.CLOSE_PARENTHESIS, NoneParams.NONE);
+        expect(TokenType.CLOSE_PARENTHESIS);
         expect(TokenType.SEMICOLON);
-        return new Ast.FunctionDeclare(id.params().toString(), params, null);
+        return new Ast.FunctionDeclare(id, params, null);
     }
 
-    private AstNode.Declaration parseVarDeclaration(Tokens.Id id, Token next) {
+    private AstNode.Declaration parseVarDeclaration(String id, TokenType next) {
         AstNode.Exp init = null;
         if (next == TokenType.ASSIGNMENT) {
             //init
@@ -155,7 +191,7 @@ public class Parser {
             init = parseExp(0);
         }
         expect(TokenType.SEMICOLON);
-        return new Ast.VarDeclare(id.params().toString(), init);
+        return new Ast.VarDeclare(id, init);
     }
 
 
@@ -175,25 +211,23 @@ public class Parser {
             expect(TokenType.CLOSE_BRACE);
             return new Ast.Compound(new Ast.Block(list));
         }
-        if (nextToken instanceof Tokens.Keyword kw) {
-            moveNext();
+        if (nextToken == TokenType.KEYWORD) {
+            int kw = moveToNextToken();
 
-            String value = kw.params().toString();
-            switch (value) {
-                case "return" -> {
+            switch (tokens.keyword(kw)) {
+                case RETURN -> {
                     AstNode.Exp node = parseExp(0);
                     Ast.ReturnStatement statement = new Ast.ReturnStatement(node);
-                    expect(TokenType.SEMICOLON, NoneParams.NONE);
+                    expect(TokenType.SEMICOLON);
                     return statement;
                 }
-                case "if" -> {
+                case IF -> {
                     expect(TokenType.OPEN_PARENTHESIS);
                     AstNode.Exp exp = parseExp(0);
                     expect(TokenType.CLOSE_PARENTHESIS);
                     var thenStmt = parseStatement();
-                    Token elseIf = getNextToken();
                     AstNode.Statement elseSt;
-                    if (elseIf.isKeyword("else")) {
+                    if (nextIsKeyword(Keyword.ELSE)) {
                         moveNext();
                         elseSt = parseStatement();
                     } else {
@@ -201,31 +235,31 @@ public class Parser {
                     }
                     return new Ast.If(exp, thenStmt, elseSt);
                 }
-                case "while" -> {
+                case WHILE -> {
                     expect(TokenType.OPEN_PARENTHESIS);
                     AstNode.Exp exp = parseExp(0);
                     expect(TokenType.CLOSE_PARENTHESIS);
                     var whileBody = parseStatement();
                     return new Ast.While(exp, whileBody);
                 }
-                case "break" -> {
+                case BREAK -> {
                     expect(TokenType.SEMICOLON);
                     return new Ast.Break();
                 }
-                case "continue" -> {
+                case CONTINUE -> {
                     expect(TokenType.SEMICOLON);
                     return new Ast.Continue();
                 }
-                case "do" -> {
+                case DO -> {
                     var doBody = parseStatement();
-                    expect(TokenType.KEYWORD, new StringTokenParam("while"));
+                    expectKeyword(Keyword.WHILE);
                     expect(TokenType.OPEN_PARENTHESIS);
                     AstNode.Exp exp = parseExp(0);
                     expect(TokenType.CLOSE_PARENTHESIS);
                     expect(TokenType.SEMICOLON);
                     return new Ast.DoWhile(doBody, exp);
                 }
-                case "for" -> {
+                case FOR -> {
                     expect(TokenType.OPEN_PARENTHESIS);
                     AstNode.ForInit forInit = parseForInit();
                     var conditionoExp = tryParseExp(TokenType.SEMICOLON);
@@ -233,25 +267,24 @@ public class Parser {
                     var body = parseStatement();
                     return new Ast.For(forInit, conditionoExp, postExp, body);
                 }
-                default -> throw new ParseException(this, "unsupported keyword " + nextToken);
+                default -> throw new ParseException(this, "unsupported keyword " + tokens.describe(kw));
             }
         }
 
         //normal exp
         AstNode.Exp node = parseExp(0);
         Ast.Expression statement = new Ast.Expression(node);
-        expect(TokenType.SEMICOLON, NoneParams.NONE);
+        expect(TokenType.SEMICOLON);
         return statement;
     }
 
     private AstNode.ForInit parseForInit() {
-        Token nextToken = getNextToken();
-        if (nextToken.isKeyword("int")) {
+        if (nextIsKeyword(Keyword.INT)) {
             //declare
             moveNext();
-            Token id = expect(TokenType.ID, null);
+            String id = tokens.text(expect(TokenType.ID));
             var next = getNextToken();
-            var dec = parseVarDeclaration((Tokens.Id) id, next);
+            var dec = parseVarDeclaration(id, next);
             return new Ast.ForInitDeclare(dec);
         }
         //exp ?
@@ -260,7 +293,7 @@ public class Parser {
     }
 
     private AstNode.Exp tryParseExp(TokenType end) {
-        Token nextToken = getNextToken();
+        TokenType nextToken = getNextToken();
         if (nextToken == end) {
             moveNext();
             return null;
@@ -271,93 +304,219 @@ public class Parser {
     }
 
 
-    public AstNode.Factor parseFactor() {
-        Token token = moveToNextToken();
-        return switch (token.type()) {
-            case ID -> {
-                Token nt = getNextToken();
-                if (nt == TokenType.OPEN_PARENTHESIS) {
-                    //function call
-                    expect(TokenType.OPEN_PARENTHESIS);
-                    Ast.ArgumentList argumentList = parseArgList();
-                    expect(TokenType.CLOSE_PARENTHESIS);
-                    yield new Ast.FunctionCall(token.params().toString(), argumentList.expList());
-                } else {
-                    Tokens.Id id = (Tokens.Id) token;
-                    Ast.Var exp = new Ast.Var(id.params().toString());
-                    yield new Ast.ExpFactor(exp);
-                }
-            }
-            case CONSTANT -> {
-                String v = token.params().toString();
-                yield new Ast.IntConstantFactor(Integer.parseInt(v));
-            }
-            case BITWISE, NEG, NOT -> {
-                AstNode.UnaryOperator op = parseOp(token);
-                var innerFact = parseFactor();
-                yield new Ast.Unary(op, innerFact);
-            }
-            case OPEN_PARENTHESIS -> {
-                AstNode.Exp inner = parseExp(0);
-                expect(TokenType.CLOSE_PARENTHESIS, NoneParams.NONE);
-                yield new Ast.ExpFactor(inner);
-            }
-
-            default -> throw new ParseException(this, "Malformed factor:" + token);
-        };
-    }
+    /*
+     * frames of the expression stack: an EXP frame runs the infix loop of one precedence level,
+     * and turns into BINARY/ASSIGN/COND_MID/COND_RIGHT while it waits for its right operand.
+     * PAREN/ARGS/UNARY wait for the exp or factor that completes them.
+     */
+    private static final int EXP = 0;
+    private static final int BINARY = 1;
+    private static final int ASSIGN = 2;
+    private static final int COND_MID = 3;
+    private static final int COND_RIGHT = 4;
+    private static final int PAREN = 5;
+    private static final int ARGS = 6;
+    private static final int UNARY = 7;
 
-    private Ast.ArgumentList parseArgList() {
-        Token t;
-        List<AstNode.Exp> list = new ArrayList<>();
-        while ((t = getNextToken()) != TokenType.CLOSE_PARENTHESIS) {
-            if (t == TokenType.COMMA) {
-                moveNext();
+    /**
+     * binding power by TokenType ordinal, -1 if the token is not an infix operator
+     */
+    private static final int[] PREC = new int[TokenType.values().length];
+    /**
+     * min precedence of the right operand, prec + 1 for left-associative operators
+     */
+    private static final int[] RIGHT_PREC = new int[PREC.length];
+    private static final AstNode.BinaryOperator[] BINARY_OP = new AstNode.BinaryOperator[PREC.length];
+
+    static {
+        for (TokenType t : TokenType.values()) {
+            int i = t.ordinal();
+            PREC[i] = t.isBinaryOp() ? t.prec() : -1;
+            if (t == TokenType.ASSIGNMENT || t == TokenType.QUESTION) {
+                RIGHT_PREC[i] = PREC[i];
+            } else if (t.isBinaryOp()) {
+                RIGHT_PREC[i] = PREC[i] + 1;
+                BINARY_OP[i] = parseBinop(t);
             }
-            AstNode.Exp exp = parseExp(0);
-            list.add(exp);
         }
-        return new Ast.ArgumentList(list);
     }
 
+    private int[] frameKind = new int[32];
+    private int[] framePrec = new int[32];
+    /**
+     * left operand of EXP frames, function name of ARGS
+     */
+    private Object[] frameLeft = new Object[32];
+    /**
+     * operator of BINARY and UNARY, mid exp of COND_RIGHT, argument list of ARGS
+     */
+    private Object[] frameAux = new Object[32];
+    private int sp = 0;
+
+    /**
+     * table driven Pratt parser over an explicit frame stack, nesting depth is not limited by the java stack.
+     * builds the same trees as precedence climbing did: identifiers and parenthesized exps are unwrapped,
+     * other factors wrapped in FactorExp, unary operators wrap the factor as is.
+     */
     public AstNode.Exp parseExp(int minPrec) {
-        AstNode.Factor factor = parseFactor();
-        AstNode.Exp left = factor instanceof Ast.ExpFactor(AstNode.Exp exp) ? exp : new Ast.FactorExp(factor);
-        Token nextToken = getNextToken();
-        while (nextToken.type().isBinaryOp() && nextToken.type().prec() >= minPrec) {
-            moveNext();
-            if (nextToken == TokenType.ASSIGNMENT) {
-                //right-associative
-                var right = parseExp(nextToken.type().prec());
-                left = new Ast.Assignment(left, right);
-            } else if (nextToken == TokenType.QUESTION) {
-                var mid = parseConditionalExp();
-                var right = parseExp(nextToken.type().prec());
-                left = new Ast.Conditional(left, mid, right);
-            } else {
-                //binary left-associative
-                var op = parseBinop(nextToken);
-                AstNode.Exp right = parseExp(nextToken.type().prec() + 1);
-                left = new Ast.Binary(op, left, right);
+        int base = sp;
+        try {
+            push(EXP, minPrec, null, null);
+            factor:
+            while (true) {
+                AstNode.Factor factor = parsePrefix();
+                while (true) {
+                    int top = sp - 1;
+                    if (factor != null) {
+                        while (frameKind[top] == UNARY) {
+                            factor = new Ast.Unary((AstNode.UnaryOperator) frameAux[top], factor);
+                            pop();
+                            top--;
+                        }
+                        frameLeft[top] = factor instanceof Ast.ExpFactor(AstNode.Exp exp) ? exp : new Ast.FactorExp(factor);
+                        factor = null;
+                    }
+                    TokenType next = getNextToken();
+                    int prec = PREC[next.ordinal()];
+                    if (prec >= 0 && prec >= framePrec[top]) {
+                        moveNext();
+                        if (next == TokenType.ASSIGNMENT) {
+                            frameKind[top] = ASSIGN;
+                            push(EXP, RIGHT_PREC[next.ordinal()], null, null);
+                        } else if (next == TokenType.QUESTION) {
+                            frameKind[top] = COND_MID;
+                            push(EXP, 0, null, null);
+                        } else {
+                            frameKind[top] = BINARY;
+                            frameAux[top] = BINARY_OP[next.ordinal()];
+                            push(EXP, RIGHT_PREC[next.ordinal()], null, null);
+                        }
+                        continue factor;
+                    }
+                    //exp of top frame is complete
+                    AstNode.Exp value = (AstNode.Exp) frameLeft[top];
+                    pop();
+                    if (sp == base) {
+                        return value;
+                    }
+                    top--;
+                    switch (frameKind[top]) {
+                        case BINARY -> {
+                            frameLeft[top] = new Ast.Binary((AstNode.BinaryOperator) frameAux[top], (AstNode.Exp) frameLeft[top], value);
+                            frameKind[top] = EXP;
+                        }
+                        case ASSIGN -> {
+                            frameLeft[top] = new Ast.Assignment((AstNode.Exp) frameLeft[top], value);
+                            frameKind[top] = EXP;
+                        }
+                        case COND_MID -> {
+                            expect(TokenType.COLON);
+                            frameAux[top] = value;
+                            frameKind[top] = COND_RIGHT;
+                            push(EXP, RIGHT_PREC[TokenType.QUESTION.ordinal()], null, null);
+                            continue factor;
+                        }
+                        case COND_RIGHT -> {
+                            frameLeft[top] = new Ast.Conditional((AstNode.Exp) frameLeft[top], (AstNode.Exp) frameAux[top], value);
+                            frameKind[top] = EXP;
+                        }
+                        case PAREN -> {
+                            expect(TokenType.CLOSE_PARENTHESIS);
+                            pop();
+                            factor = new Ast.ExpFactor(value);
+                        }
+                        case ARGS -> {
+                            @SuppressWarnings("unchecked")
+                            List<AstNode.Exp> args = (List<AstNode.Exp>) frameAux[top];
+                            args.add(value);
+                            if (getNextToken() != TokenType.CLOSE_PARENTHESIS) {
+                                nextArg();
+                                continue factor;
+                            }
+                            expect(TokenType.CLOSE_PARENTHESIS);
+                            factor = new Ast.FunctionCall((String) frameLeft[top], args);
+                            pop();
+                        }
+                        default -> throw new IllegalStateException("frame " + frameKind[top]);
+                    }
+                }
+            }
+        } finally {
+            while (sp > base) {
+                pop();
             }
-            nextToken = getNextToken();
         }
-        return left;
     }
 
     /**
-     * parse conditional exp
+     * read tokens up to a complete factor, pushing a frame for every factor that needs an inner exp first
      *
-     * @return
+     * @return the factor, or null if an inner exp has to be parsed first
      */
-    private AstNode.Exp parseConditionalExp() {
-        AstNode.Exp exp = parseExp(0);
-        expect(TokenType.COLON);
-        return exp;
+    private AstNode.Factor parsePrefix() {
+        while (true) {
+            int token = moveToNextToken();
+            TokenType type = tokens.type(token);
+            switch (type) {
+                case ID -> {
+                    if (getNextToken() != TokenType.OPEN_PARENTHESIS) {
+                        return new Ast.ExpFactor(new Ast.Var(tokens.text(token)));
+                    }
+                    //function call
+                    expect(TokenType.OPEN_PARENTHESIS);
+                    List<AstNode.Exp> args = new ArrayList<>();
+                    if (getNextToken() == TokenType.CLOSE_PARENTHESIS) {
+                        expect(TokenType.CLOSE_PARENTHESIS);
+                        return new Ast.FunctionCall(tokens.text(token), args);
+                    }
+                    push(ARGS, 0, tokens.text(token), args);
+                    nextArg();
+                }
+                case CONSTANT -> {
+                    return new Ast.IntConstantFactor(tokens.constantValue(token));
+                }
+                case BITWISE, NEG, NOT -> push(UNARY, 0, null, parseOp(type));
+                case OPEN_PARENTHESIS -> {
+                    push(PAREN, 0, null, null);
+                    push(EXP, 0, null, null);
+                }
+                default -> throw new ParseException(this, "Malformed factor:" + tokens.describe(token));
+            }
+        }
     }
 
+    /**
+     * argument separator is optional
+     */
+    private void nextArg() {
+        if (getNextToken() == TokenType.COMMA) {
+            moveNext();
+        }
+        push(EXP, 0, null, null);
+    }
 
-    private AstNode.BinaryOperator parseBinop(Token token) {
+    private void push(int kind, int prec, Object left, Object aux) {
+        if (sp == frameKind.length) {
+            int c = sp << 1;
+            frameKind = Arrays.copyOf(frameKind, c);
+            framePrec = Arrays.copyOf(framePrec, c);
+            frameLeft = Arrays.copyOf(frameLeft, c);
+            frameAux = Arrays.copyOf(frameAux, c);
+        }
+        frameKind[sp] = kind;
+        framePrec[sp] = prec;
+        frameLeft[sp] = left;
+        frameAux[sp] = aux;
+        sp++;
+    }
+
+    private void pop() {
+        sp--;
+        frameLeft[sp] = null;
+        frameAux[sp] = null;
+    }
+
+    private static AstNode.BinaryOperator parseBinop(TokenType token) {
         return switch (token) {
             case TokenType.PLUS -> Ast.BinaryOp.Add;
             case TokenType.NEG -> Ast.BinaryOp.Subtract;
@@ -379,8 +538,8 @@ public class Parser {
     }
 
 
-    private AstNode.UnaryOperator parseOp(Token token) {
-        return switch (token.type()) {
+    private AstNode.UnaryOperator parseOp(TokenType token) {
+        return switch (token) {
             case BITWISE -> Ast.UnaryOp.Complement;
             case NEG -> Ast.UnaryOp.Negate;
             case NOT -> Ast.UnaryOp.Not;
@@ -388,72 +547,71 @@ public class Parser {
         };
     }
 
-    private Token expect(TokenType type) {
-        return this.expect(type, NoneParams.NONE);
+    private int expect(TokenType type) {
+        return this.expect(type, null);
+    }
+
+    private int expectKeyword(Keyword keyword) {
+        return this.expect(TokenType.KEYWORD, keyword);
     }
 
     /**
      * @param type
-     * @param tokenValue null for any
-     * @return
+     * @param keyword null for any
+     * @return index of the token
      */
-    private Token expect(TokenType type, TokenParams tokenValue) {
-        String paramStr
-                = tokenValue == null ? "any value" : (Objects.equals(NoneParams.NONE, tokenValue) ? "" : tokenValue.toString());
-        String msg = paramStr.isEmpty() ? "" : " with value " + paramStr;
-        if (pos >= len) {
+    private int expect(TokenType type, Keyword keyword) {
+        String msg = keyword == null ? "" : " with value " + keyword.value;
+        if (pos + 1 >= len) {
             throw new ParseException(this, "Expect %s%s,but get %s", type.name(), msg, "EOF");
         }
-        Token token = moveToNextToken();
-        if (token == null) {
-            throw new ParseException(this, "Expect %s%s,but get null", type.name(), msg);
-        }
-        if (token.type() == type && (tokenValue == null || Objects.equals(tokenValue, token.params()))) {
+        int token = moveToNextToken();
+        if (tokens.type(token) == type && (keyword == null || tokens.isKeyword(token, keyword))) {
             return token;
         }
-        throw new ParseException(this, "Expect %s%s,but get %s", type.name(), msg, token.toString());
+        throw new ParseException(this, "Expect %s%s,but get %s", type.name(), msg, tokens.describe(token));
     }
 
     String reportCurrentPos() {
-        int end = Math.min(tokenList.size(), pos + 5);
-        var list = tokenList.subList(pos, end);
-        String tokens = list.stream().map(i -> i.toString()).collect(Collectors.joining(","));
-        return String.format("@Line[%s] near tokens:[%s]", lineInfo(), tokens);
+        int from = Math.max(pos, 0);
+        int end = Math.min(len, from + 5);
+        StringJoiner joiner = new StringJoiner(",");
+        for (int i = from; i < end; i++) {
+            joiner.add(tokens.describe(i));
+        }
+        return String.format("@Line[%s] near tokens:[%s]", lineInfo(), joiner);
     }
 
     private String lineInfo() {
-        return currentLine == null ? "1" : currentLine.params().toString();
+        return pos < 0 ? "1" : String.valueOf(tokens.line(pos));
     }
 
     /**
      * move pointer pos to nextToken
      *
-     * @return nextToken
+     * @return index of nextToken
      */
-    private Token moveToNextToken() {
+    private int moveToNextToken() {
         pos++;
-        while (true) {
-            if (pos >= tokenList.size()) {
-                throw new IllegalStateException();
-            }
-            Token token = tokenList.get(pos);
-            if (token instanceof Tokens.NewLine) {
-                this.currentLine = token;
-                pos++;
-            } else {
-                return token;
-            }
+        if (pos >= len) {
+            throw new IllegalStateException();
         }
+        return pos;
     }
 
-    private Token getNextToken() {
-        Token t;
-        int i = pos;
-        i++;
-        while ((t = tokenList.get(i)) instanceof Tokens.NewLine) {
-            i++;
-        }
-        return t;
+    /**
+     * @return index of nextToken, pointer pos not moved
+     */
+    private int peekIndex() {
+        return Math.min(pos + 1, len - 1);
+    }
+
+    private TokenType getNextToken() {
+        return tokens.type(peekIndex());
+    }
+
+    private boolean nextIsKeyword(Keyword keyword) {
+        return tokens.isKeyword(peekIndex(), keyword);
     }
 
     /**
@@ -1,5 +1,7 @@
 package cn.deepmax.jfx.parse;
 
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.Symbols;
 import cn.deepmax.jfx.exception.SemanticException;
 
 import java.util.List;
@@ -10,8 +12,23 @@ import java.util.stream.Collectors;
  */
 public class Resolver {
 
-    private Identifiers identifiers = new Identifiers();
-    private Labels currentLabel = new Labels();
+    private final Symbols symbols;
+    private Identifiers identifiers;
+    private Labels currentLabel;
+    /**
+     * side tables of {@link #annotateProgram}
+     */
+    private Annotations annotations;
+
+    public Resolver() {
+        this(new CompilationContext());
+    }
+
+    public Resolver(CompilationContext context) {
+        this.symbols = context.symbols();
+        this.identifiers = new Identifiers(context);
+        this.currentLabel = new Labels(context);
+    }
 
     /**
      * resolve program
@@ -27,6 +44,208 @@ public class Resolver {
         return new Ast.AstProgram(list);
     }
 
+    /**
+     * resolve without rebuilding the tree, symbols and loop labels go to the returned side tables.
+     * same checks in the same order and same symbols as the names of {@link #resolveProgram}
+     *
+     * @param program parsed program, left as is
+     * @return
+     */
+    public Annotations annotateProgram(Ast.AstProgram program) {
+        this.annotations = new Annotations();
+        try {
+            for (Ast.FunctionDeclare f : program.functionDeclarations()) {
+                annotateFunctionDeclaration(f);
+            }
+            return annotations;
+        } finally {
+            this.annotations = null;
+        }
+    }
+
+    private void annotateFunctionDeclaration(Ast.FunctionDeclare f) {
+        identifiers.putFunc(f.identifier(), f);
+        this.identifiers = this.identifiers.newScope();
+        for (AstNode.Param param : f.params()) {
+            if (param instanceof Ast.VarParam v) {
+                identifiers.checkVar(v.identifier());
+                annotations.putSymbol(v, identifiers.putVar(v.identifier(), true));
+            }
+        }
+        if (f.body() != null) {
+            for (AstNode.BlockItem item : f.body().blockItems()) {
+                annotateBlockItem(item);
+                annotateLabels(item);
+            }
+        }
+        this.identifiers = this.identifiers.parent;
+    }
+
+    private void annotateBlockItem(AstNode.BlockItem item) {
+        switch (item) {
+            case Ast.DeclareBlockItem d -> annotateDeclaration(d.statement());
+            case Ast.StatementBlockItem i -> annotateStatement(i.statement());
+            default -> throw new SemanticException("unsupported item " + item.toString());
+        }
+    }
+
+    private void annotateDeclaration(AstNode.Declaration declaration) {
+        switch (declaration) {
+            case Ast.VarDeclare d -> {
+                identifiers.checkVar(d.identifier());
+                annotations.putSymbol(d, identifiers.putVar(d.identifier(), true));
+                annotateExp(d.exp());
+            }
+            case Ast.FunctionDeclare f -> annotateFunctionDeclaration(f);
+        }
+    }
+
+    private void annotateFactor(AstNode.Factor factor) {
+        switch (factor) {
+            case Ast.ExpFactor e -> annotateExp(e.exp());
+            case Ast.Unary u -> annotateFactor(u.factor());
+            case Ast.IntConstantFactor f -> {
+            }
+            case Ast.FunctionCall call -> {
+                identifiers.checkFunCallName(call.identifier());
+                for (AstNode.Exp arg : call.args()) {
+                    annotateExp(arg);
+                }
+            }
+            default -> throw new SemanticException("Unsupported " + factor);
+        }
+    }
+
+    private void annotateExp(AstNode.Exp exp) {
+        switch (exp) {
+            case null -> {
+            }
+            case Ast.Assignment it -> {
+                if (it.left() instanceof Ast.Var v) {
+                    annotateExp(v);
+                    annotateExp(it.right());
+                } else {
+                    throw new SemanticException("Invalid lvalue [%s]", it.left().toString());
+                }
+            }
+            case Ast.Var v -> {
+                int symbol = identifiers.symbolOf(v.identifier());
+                if (symbol < 0) {
+                    throw new SemanticException("Undeclared variable [%s]", v.identifier());
+                }
+                annotations.putSymbol(v, symbol);
+            }
+            case Ast.Binary b -> {
+                annotateExp(b.left());
+                annotateExp(b.right());
+            }
+            case Ast.FactorExp f -> annotateFactor(f.factor());
+            case Ast.Conditional c -> {
+                annotateExp(c.condition());
+                annotateExp(c.trueExp());
+                annotateExp(c.falseExp());
+            }
+            default -> throw new UnsupportedOperationException(exp.toString());
+        }
+    }
+
+    private void annotateStatement(AstNode.Statement statement) {
+        switch (statement) {
+            case null -> {
+            }
+            case Ast.ReturnStatement r -> annotateExp(r.exp());
+            case Ast.Expression e -> annotateExp(e.exp());
+            case Ast.Null n -> {
+            }
+            case Ast.If s -> {
+                annotateExp(s.condition());
+                annotateStatement(s.then());
+                annotateStatement(s.elseSt());
+            }
+            case Ast.Compound c -> {
+                this.identifiers = this.identifiers.newScope();
+                for (AstNode.BlockItem item : c.block().blockItems()) {
+                    annotateBlockItem(item);
+                }
+                this.identifiers = this.identifiers.parent;
+            }
+            case Ast.While w -> {
+                annotateExp(w.condition());
+                annotateStatement(w.body());
+            }
+            case Ast.DoWhile w -> {
+                annotateStatement(w.body());
+                annotateExp(w.condition());
+            }
+            case Ast.Break b -> {
+            }
+            case Ast.Continue c -> {
+            }
+            case Ast.BreakLabel l -> {
+            }
+            case Ast.ContinueLabel l -> {
+            }
+            case Ast.For f -> {
+                this.identifiers = this.identifiers.newScope();
+                switch (f.init()) {
+                    case Ast.ForInitDeclare d -> annotateDeclaration(d.declaration());
+                    case Ast.ForInitExp e -> annotateExp(e.exp());
+                }
+                annotateExp(f.condition());
+                annotateExp(f.post());
+                annotateStatement(f.body());
+                this.identifiers = this.identifiers.parent;
+            }
+            default -> throw new SemanticException("Unsupported " + statement.toString());
+        }
+    }
+
+    private void annotateLabels(AstNode.BlockItem item) {
+        if (item instanceof Ast.StatementBlockItem i) {
+            annotateLabels(i.statement());
+        }
+    }
+
+    private void annotateLabels(AstNode.Statement statement) {
+        switch (statement) {
+            case null -> {
+            }
+            case Ast.Break it -> {
+                if (this.currentLabel.noLabel()) {
+                    throw new SemanticException("break statement outside of loop!");
+                }
+                annotations.putLabel(it, this.currentLabel.labelValue);
+            }
+            case Ast.Continue it -> {
+                if (this.currentLabel.noLabel()) {
+                    throw new SemanticException("continue statement outside of loop!");
+                }
+                annotations.putLabel(it, this.currentLabel.labelValue);
+            }
+            case Ast.While w -> annotateLoop(w, w.body());
+            case Ast.DoWhile w -> annotateLoop(w, w.body());
+            case Ast.For f -> annotateLoop(f, f.body());
+            case Ast.If f -> {
+                annotateLabels(f.then());
+                annotateLabels(f.elseSt());
+            }
+            case Ast.Compound c -> {
+                for (AstNode.BlockItem item : c.block().blockItems()) {
+                    annotateLabels(item);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void annotateLoop(AstNode.Statement loop, AstNode.Statement body) {
+        this.currentLabel = this.currentLabel.makeTempLabel();
+        annotations.putLabel(loop, this.currentLabel.labelValue);
+        annotateLabels(body);
+        this.currentLabel = this.currentLabel.parent;
+    }
+
     private Ast.FunctionDeclare resolveFunctionDeclare(Ast.FunctionDeclare fun) {
         return (Ast.FunctionDeclare) resolveFunctionDeclaration(fun);
     }
@@ -65,7 +284,7 @@ public class Resolver {
             case Ast.VarDeclare d -> {
                 var idValue = d.identifier();
                 identifiers.checkVar(idValue);
-                String replacedName = identifiers.putVar(idValue, true);
+                String replacedName = symbols.name(identifiers.putVar(idValue, true));
                 yield new Ast.VarDeclare(replacedName, resolveExp(d.exp()));
             }
             case Ast.FunctionDeclare f -> resolveFunctionDeclaration(f);
@@ -86,7 +305,7 @@ public class Resolver {
     private AstNode.Param resolveParam(AstNode.Param param) {
         if (param instanceof Ast.VarParam v) {
             identifiers.checkVar(v.identifier());
-            String newId = identifiers.putVar(v.identifier(), true);
+            String newId = symbols.name(identifiers.putVar(v.identifier(), true));
             return new Ast.VarParam(v.type(), newId);
         } else {
             return param;
@@ -122,9 +341,9 @@ public class Resolver {
             }
             case Ast.Var v -> {
                 String rawId = v.identifier();
-                String existReplacement = identifiers.mappingToReplacement(rawId);
-                if (existReplacement != null) {
-                    yield new Ast.Var(existReplacement);
+                int symbol = identifiers.symbolOf(rawId);
+                if (symbol >= 0) {
+                    yield new Ast.Var(symbols.name(symbol));
                 } else {
                     throw new SemanticException("Undeclared variable [%s]", rawId);
                 }
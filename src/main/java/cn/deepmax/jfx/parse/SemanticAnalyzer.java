@@ -0,0 +1,246 @@
+package cn.deepmax.jfx.parse;
+
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.exception.SemanticException;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * resolve, loop labeling and type check in one walk of the tree.
+ * gives the same annotations and symbol table as {@link Resolver#annotateProgram} followed by {@link TypeChecker},
+ * which stay as the reference implementation. a program with several errors may report another one of them first,
+ * and loop bodies are type checked too.
+ */
+public class SemanticAnalyzer {
+
+    private final CompilationContext context;
+    private final SymbolTable table;
+    private Identifiers identifiers;
+    private Labels currentLabel;
+    private Annotations annotations;
+    /**
+     * function whose body is walked, owner of its local variables in the symbol table
+     */
+    private String funIdentifier;
+
+    public SemanticAnalyzer(CompilationContext context) {
+        this(context, context.symbolTable());
+    }
+
+    SemanticAnalyzer(CompilationContext context, SymbolTable table) {
+        this.context = context;
+        this.table = table;
+        this.identifiers = new Identifiers(context);
+        this.currentLabel = new Labels(context);
+    }
+
+    public SymbolTable symbolTable() {
+        return table;
+    }
+
+    /**
+     * @param program parsed program, left as is
+     * @return unique names and loop labels
+     */
+    public Annotations analyzeProgram(Ast.AstProgram program) {
+        this.annotations = new Annotations();
+        try {
+            for (Ast.FunctionDeclare f : program.functionDeclarations()) {
+                analyzeFunctionDeclaration(f);
+            }
+            return annotations;
+        } finally {
+            this.annotations = null;
+        }
+    }
+
+    /**
+     * analyze function bodies of large programs on a pool, see {@link ParallelSemanticAnalyzer}.
+     * same result and same diagnostics as {@link #analyzeProgram(Ast.AstProgram)}
+     */
+    public Annotations analyzeProgram(Ast.AstProgram program, ForkJoinPool pool) {
+        Annotations annotations = ParallelSemanticAnalyzer.analyze(program, context, table, pool);
+        return annotations == null ? analyzeProgram(program) : annotations;
+    }
+
+    private void analyzeFunctionDeclaration(Ast.FunctionDeclare f) {
+        identifiers.putFunc(f.identifier(), f);
+        table.declareFunction(f);
+        this.identifiers = this.identifiers.newScope();
+        for (AstNode.Param param : f.params()) {
+            if (!(param instanceof Ast.VarParam v)) {
+                throw new SemanticException("invalid param");
+            }
+            identifiers.checkVar(v.identifier());
+            int symbol = identifiers.putVar(v.identifier(), true);
+            annotations.putSymbol(v, symbol);
+            if (f.body() != null) {
+                table.putVariable(f.identifier(), symbol);
+            }
+        }
+        if (f.body() != null) {
+            String outer = this.funIdentifier;
+            this.funIdentifier = f.identifier();
+            for (AstNode.BlockItem item : f.body().blockItems()) {
+                analyzeBlockItem(item);
+            }
+            this.funIdentifier = outer;
+        }
+        this.identifiers = this.identifiers.parent;
+    }
+
+    private void analyzeBlockItem(AstNode.BlockItem item) {
+        switch (item) {
+            case Ast.DeclareBlockItem d -> analyzeDeclaration(d.statement());
+            case Ast.StatementBlockItem i -> analyzeStatement(i.statement());
+            default -> throw new SemanticException("unsupported item " + item.toString());
+        }
+    }
+
+    private void analyzeDeclaration(AstNode.Declaration declaration) {
+        switch (declaration) {
+            case Ast.VarDeclare d -> {
+                identifiers.checkVar(d.identifier());
+                int symbol = identifiers.putVar(d.identifier(), true);
+                annotations.putSymbol(d, symbol);
+                table.putVariable(funIdentifier, symbol);
+                analyzeExp(d.exp());
+            }
+            case Ast.FunctionDeclare f -> analyzeFunctionDeclaration(f);
+        }
+    }
+
+    private void analyzeFactor(AstNode.Factor factor) {
+        switch (factor) {
+            case Ast.ExpFactor e -> analyzeExp(e.exp());
+            case Ast.Unary u -> analyzeFactor(u.factor());
+            case Ast.IntConstantFactor f -> {
+            }
+            case Ast.FunctionCall call -> {
+                String id = call.identifier();
+                identifiers.checkFunCallName(id);
+                switch (table.get(id)) {
+                    case null -> throw new SemanticException("Can't call on undeclared function:" + id);
+                    case TypeDef.VariableType t -> throw new SemanticException("Can't do function call on var " + id);
+                    case TypeDef.FunType f -> {
+                        if (f.paramCount != call.args().size()) {
+                            throw new SemanticException(String.format("function call need %d args, but only provide %d.",
+                                    f.paramCount,
+                                    call.args().size()));
+                        }
+                    }
+                }
+                for (AstNode.Exp arg : call.args()) {
+                    analyzeExp(arg);
+                }
+            }
+            default -> throw new SemanticException("Unsupported " + factor);
+        }
+    }
+
+    private void analyzeExp(AstNode.Exp exp) {
+        switch (exp) {
+            case null -> {
+            }
+            case Ast.Assignment it -> {
+                if (it.left() instanceof Ast.Var v) {
+                    analyzeExp(v);
+                    analyzeExp(it.right());
+                } else {
+                    throw new SemanticException("Invalid lvalue [%s]", it.left().toString());
+                }
+            }
+            case Ast.Var v -> {
+                int symbol = identifiers.symbolOf(v.identifier());
+                if (symbol < 0) {
+                    throw new SemanticException("Undeclared variable [%s]", v.identifier());
+                }
+                if (!table.isVariable(symbol)) {
+                    throw new SemanticException("Function name used as variable");
+                }
+                annotations.putSymbol(v, symbol);
+            }
+            case Ast.Binary b -> {
+                analyzeExp(b.left());
+                analyzeExp(b.right());
+            }
+            case Ast.FactorExp f -> analyzeFactor(f.factor());
+            case Ast.Conditional c -> {
+                analyzeExp(c.condition());
+                analyzeExp(c.trueExp());
+                analyzeExp(c.falseExp());
+            }
+            default -> throw new UnsupportedOperationException(exp.toString());
+        }
+    }
+
+    private void analyzeStatement(AstNode.Statement statement) {
+        switch (statement) {
+            case null -> {
+            }
+            case Ast.ReturnStatement r -> analyzeExp(r.exp());
+            case Ast.Expression e -> analyzeExp(e.exp());
+            case Ast.Null n -> {
+            }
+            case Ast.If s -> {
+                analyzeExp(s.condition());
+                analyzeStatement(s.then());
+                analyzeStatement(s.elseSt());
+            }
+            case Ast.Compound c -> {
+                this.identifiers = this.identifiers.newScope();
+                for (AstNode.BlockItem item : c.block().blockItems()) {
+                    analyzeBlockItem(item);
+                }
+                this.identifiers = this.identifiers.parent;
+            }
+            case Ast.While w -> {
+                enterLoop(w);
+                analyzeExp(w.condition());
+                analyzeStatement(w.body());
+                this.currentLabel = this.currentLabel.parent;
+            }
+            case Ast.DoWhile w -> {
+                enterLoop(w);
+                analyzeStatement(w.body());
+                analyzeExp(w.condition());
+                this.currentLabel = this.currentLabel.parent;
+            }
+            case Ast.For f -> {
+                enterLoop(f);
+                this.identifiers = this.identifiers.newScope();
+                switch (f.init()) {
+                    case Ast.ForInitDeclare d -> analyzeDeclaration(d.declaration());
+                    case Ast.ForInitExp e -> analyzeExp(e.exp());
+                }
+                analyzeExp(f.condition());
+                analyzeExp(f.post());
+                analyzeStatement(f.body());
+                this.identifiers = this.identifiers.parent;
+                this.currentLabel = this.currentLabel.parent;
+            }
+            case Ast.Break it -> {
+                if (this.currentLabel.noLabel()) {
+                    throw new SemanticException("break statement outside of loop!");
+                }
+                annotations.putLabel(it, this.currentLabel.labelValue);
+            }
+            case Ast.Continue it -> {
+                if (this.currentLabel.noLabel()) {
+                    throw new SemanticException("continue statement outside of loop!");
+                }
+                annotations.putLabel(it, this.currentLabel.labelValue);
+            }
+            case Ast.BreakLabel l -> {
+            }
+            case Ast.ContinueLabel l -> {
+            }
+            default -> throw new SemanticException("Unsupported " + statement.toString());
+        }
+    }
+
+    private void enterLoop(AstNode.Statement loop) {
+        this.currentLabel = this.currentLabel.makeTempLabel();
+        annotations.putLabel(loop, this.currentLabel.labelValue);
+    }
+}
@@ -1,13 +1,40 @@
 package cn.deepmax.jfx.parse;
 
+import cn.deepmax.jfx.exception.SemanticException;
+
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * owned by {@link cn.deepmax.jfx.CompilationContext}
+ */
 public class SymbolTable {
 
-    public static final SymbolTable TABLE = new SymbolTable();
-
     Map<String, TypeDef.Type> globalTable = new HashMap<>();
+    /**
+     * symbols of variables, for annotated trees
+     */
+    final BitSet variables = new BitSet();
+
+    /**
+     * check a function declaration against the previous ones of the same name and record it
+     */
+    public void declareFunction(Ast.FunctionDeclare f) {
+        var hasBody = f.body() != null;
+        boolean alreadyDefined = false;
+        var exist = get(f.identifier());
+        if (exist != null) {
+            if (!(exist instanceof TypeDef.FunType oldDef) || oldDef.paramCount != f.realParamSize()) {
+                throw new SemanticException("declaration is incompatible with previous :" + f.identifier());
+            }
+            alreadyDefined = oldDef.defined;
+            if (alreadyDefined && hasBody) {
+                throw new SemanticException("Duplicate declaration of function " + f.identifier());
+            }
+        }
+        put(f.identifier(), TypeDef.FunType.newInstanceFrom(f.realParamSize(), hasBody || alreadyDefined, exist));
+    }
 
     public void put(String id, TypeDef.Type type) {
         globalTable.put(id, type);
@@ -18,6 +45,15 @@ public class SymbolTable {
         globalTable.put(id, type);
     }
 
+    public void putVariable(String funcName, int symbol) {
+        mustGetFunc(funcName).addVariable(symbol);
+        variables.set(symbol);
+    }
+
+    public boolean isVariable(int symbol) {
+        return variables.get(symbol);
+    }
+
     public TypeDef.FunType mustGetFunc(String funcName) {
         TypeDef.Type fn = globalTable.get(funcName);
         TypeDef.FunType fun = (TypeDef.FunType) fn;
@@ -1,5 +1,6 @@
 package cn.deepmax.jfx.parse;
 
+import cn.deepmax.jfx.CompilationContext;
 import cn.deepmax.jfx.exception.SemanticException;
 import cn.deepmax.jfx.utils.Assertion;
 
@@ -7,7 +8,24 @@ import java.util.Objects;
 
 public class TypeChecker {
 
-    private final SymbolTable table = new SymbolTable();
+    private final SymbolTable table;
+    /**
+     * names of an unresolved tree, null when the tree is resolved by {@link Resolver#resolveProgram}
+     */
+    private final Annotations annotations;
+
+    public TypeChecker() {
+        this(new CompilationContext());
+    }
+
+    public TypeChecker(CompilationContext context) {
+        this(context, null);
+    }
+
+    public TypeChecker(CompilationContext context, Annotations annotations) {
+        this.table = context.symbolTable();
+        this.annotations = annotations;
+    }
 
     public SymbolTable symbolTable() {
         return table;
@@ -44,8 +62,11 @@ public class TypeChecker {
     private void checkDeclaration(String funIdentifier, AstNode.Declaration declaration) {
         switch (declaration) {
             case Ast.VarDeclare d -> {
-                var idValue = d.identifier();
-                table.putVariable(funIdentifier, idValue, TypeDef.VariableType.Int);
+                if (annotations == null) {
+                    table.putVariable(funIdentifier, d.identifier(), TypeDef.VariableType.Int);
+                } else {
+                    table.putVariable(funIdentifier, annotations.symbolOf(d));
+                }
                 checkExp(d.exp());
             }
             case Ast.FunctionDeclare f -> checkFunctionDeclaration(f);
@@ -74,7 +95,11 @@ public class TypeChecker {
         if (hasBody) {
             f.params().forEach(p -> {
                 if (p instanceof Ast.VarParam vp) {
-                    table.putVariable(f.identifier(), vp.identifier(), TypeDef.VariableType.Int);
+                    if (annotations == null) {
+                        table.putVariable(f.identifier(), vp.identifier(), TypeDef.VariableType.Int);
+                    } else {
+                        table.putVariable(f.identifier(), annotations.symbolOf(vp));
+                    }
                 } else {
                     throw new SemanticException("invalid param");
                 }
@@ -124,6 +149,12 @@ public class TypeChecker {
                     throw new SemanticException("Invalid lvalue [%s]", it.left().toString());
                 }
             }
+            case Ast.Var v when annotations != null -> {
+                //a symbol is always a variable
+                if (!table.isVariable(annotations.symbolOf(v))) {
+                    throw new IllegalStateException("undeclared symbol of " + v.identifier());
+                }
+            }
             case Ast.Var v -> {
                 String rawId = v.identifier();
                 TypeDef.Type existType = table.get(rawId);
@@ -163,6 +194,13 @@ public class TypeChecker {
                 checkStatement(funcIdentifier, s.elseSt());
             }
             case Ast.Compound c -> c.block().blockItems().forEach(s -> checkBlockItem(funcIdentifier, s));
+            //a resolved loop is an AnnotationLabeledStatement and not checked, same for an annotated one
+            case Ast.While w when annotations != null && annotations.labelOf(w) != null -> {
+            }
+            case Ast.DoWhile w when annotations != null && annotations.labelOf(w) != null -> {
+            }
+            case Ast.For f when annotations != null && annotations.labelOf(f) != null -> {
+            }
             case Ast.While w -> {
                 checkExp(w.condition());
                 checkStatement(funcIdentifier, w.body());
@@ -1,6 +1,7 @@
 package cn.deepmax.jfx.parse;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 public class TypeDef {
@@ -13,6 +14,10 @@ public class TypeDef {
         public final int paramCount;
         public final boolean defined;
         public final List<String> localVariables = new ArrayList<>();
+        /**
+         * symbols of the local variables, for annotated trees
+         */
+        public final BitSet localSymbols = new BitSet();
 
         public FunType(int paramCount, boolean defined) {
             this.paramCount = paramCount;
@@ -25,11 +30,16 @@ public class TypeDef {
             }
         }
 
+        public void addVariable(int symbol) {
+            localSymbols.set(symbol);
+        }
+
         public static FunType newInstanceFrom(int paramCount, boolean defined, Type other) {
 
             FunType result = new FunType(paramCount, defined);
             if (other == null) return result;
             if (other instanceof FunType funType) {
+                result.localSymbols.or(funType.localSymbols);
                 if (funType.localVariables.isEmpty()) return result;
                 result.localVariables.addAll(funType.localVariables);
                 return result;
@@ -0,0 +1,88 @@
+package cn.deepmax.jfx.utils;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * int keyed hash map with open addressing, keys are never boxed.
+ * for interning values by an int, no remove.
+ */
+public final class IntMap<V> {
+
+    private int[] keys = new int[16];
+    private Object[] values = new Object[16];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        for (int at = hash(key) & mask; values[at] != null; at = (at + 1) & mask) {
+            if (keys[at] == key) {
+                return (V) values[at];
+            }
+        }
+        return null;
+    }
+
+    public V computeIfAbsent(int key, IntFunction<V> f) {
+        V v = get(key);
+        if (v == null) {
+            v = f.apply(key);
+            put(key, v);
+        }
+        return v;
+    }
+
+    /**
+     * @param value not null
+     */
+    public void put(int key, V value) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int at = hash(key) & mask;
+        while (values[at] != null && keys[at] != key) {
+            at = (at + 1) & mask;
+        }
+        if (values[at] == null) {
+            size++;
+        }
+        keys[at] = key;
+        values[at] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int at = hash(oldKeys[i]) & mask;
+                while (values[at] != null) {
+                    at = (at + 1) & mask;
+                }
+                keys[at] = oldKeys[i];
+                values[at] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,104 @@
+package cn.deepmax.jfx;
+
+import cn.deepmax.jfx.asm.AsmAst;
+import cn.deepmax.jfx.emit.Emission;
+import cn.deepmax.jfx.exception.SemanticException;
+import cn.deepmax.jfx.ir.IRConverter;
+import cn.deepmax.jfx.lexer.Lexer;
+import cn.deepmax.jfx.parse.Ast;
+import cn.deepmax.jfx.parse.Parser;
+import cn.deepmax.jfx.parse.TypeChecker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationContextTest {
+
+    private static final String SOURCE = """
+            int fib(int n) {
+                if (n <= 1) return n;
+                int a = fib(n - 1);
+                return a + fib(n - 2);
+            }
+            int main(void) {
+                int sum = 0;
+                for (int i = 0; i < 10; i = i + 1) {
+                    while (sum > 100 && i) { sum = sum - 1; break; }
+                    sum = sum + (i ? fib(i) : 0);
+                }
+                return sum || 0;
+            }
+            """;
+
+    private static final String SHADOWING = """
+            int f(int a, int b);
+            int main(void) {
+                int a = 1;
+                do {
+                    int a = a + 2;
+                    for (a = 0; a < 3; a = a + 1) {
+                        int b = a;
+                        if (b == 2) continue;
+                        while (1) break;
+                    }
+                    { int f = 3; a = f; }
+                } while (!a);
+                return f(a, a > 1 ? 2 : 3);
+            }
+            int f(int a, int b) { return a * b; }
+            """;
+
+    private static String compile(String source) {
+        CompilationContext context = new CompilationContext();
+        Parser p = new Parser(new Lexer(source).tokenBuffer(), context);
+        Ast.AstProgram ast = p.resolver.resolveProgram(p.parseProgram());
+        new TypeChecker(context).checkProgram(ast);
+        var ir = new IRConverter(ast, context).convertToIR();
+        return Emission.codegen(AsmAst.createAsmAst(ir, context));
+    }
+
+    @Test
+    void test_repeated_compiles_are_identical() {
+        assertEquals(compile(SOURCE), compile(SOURCE));
+    }
+
+    @Test
+    void test_annotated_tree_compiles_like_resolved_tree() {
+        for (String source : List.of(SOURCE, SHADOWING)) {
+            assertEquals(compile(source), Compiler.compileNow(source, CompileOptions.ALL).assembly());
+        }
+    }
+
+    @Test
+    void test_annotated_tree_errors_like_resolved_tree() {
+        for (String source : List.of(
+                "int main(void) { if (1) break; return 0; }",
+                "int main(void) { int a = 1; int a = 2; return b; }",
+                "int main(void) { 2 = 3; return 0; }",
+                "int main(void) { int f = 1; return f(); }")) {
+            var expect = assertThrows(SemanticException.class, () -> compile(source));
+            var actual = assertThrows(SemanticException.class, () -> Compiler.compileNow(source, CompileOptions.ALL));
+            assertEquals(expect.getMessage(), actual.getMessage());
+        }
+    }
+
+    @Test
+    void test_concurrent_compiles_are_identical() throws Exception {
+        String expect = compile(SOURCE);
+        try (ExecutorService pool = Executors.newFixedThreadPool(4)) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(pool.submit(() -> compile(SOURCE)));
+            }
+            for (Future<String> f : results) {
+                assertEquals(expect, f.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cn.deepmax.jfx;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompileProtocolTest {
+
+    private static ByteArrayInputStream input(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void test_request_round_trip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompileProtocol.writeRequest(out, "/home/ü", new String[]{"-c", "--lex", "a b.c", ""});
+        assertEquals("/home/ü\n4\n-c\n--lex\na b.c\n\n", out.toString(StandardCharsets.UTF_8));
+
+        CompileProtocol.Request request = CompileProtocol.readRequest(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("/home/ü", request.workDir());
+        assertArrayEquals(new String[]{"-c", "--lex", "a b.c", ""}, request.args());
+    }
+
+    @Test
+    void test_response_round_trip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompileProtocol.writeResponse(out, 1, "bad\ntoken");
+        CompileProtocol.Response response = CompileProtocol.readResponse(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(new CompileProtocol.Response(1, "bad\ntoken"), response);
+
+        out.reset();
+        CompileProtocol.writeResponse(out, 0, "");
+        assertEquals("0\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void test_rejects_bad_requests() {
+        assertThrows(IOException.class, () -> CompileProtocol.readRequest(input("/tmp\n-1\n")));
+        assertThrows(IOException.class, () -> CompileProtocol.readRequest(input("/tmp\n2147483647\n")));
+        assertThrows(IOException.class, () -> CompileProtocol.readRequest(input("/tmp\nmany\n")));
+        assertThrows(IOException.class, () -> CompileProtocol.readRequest(input("/tmp\n2\n-c\n")));
+        assertThrows(IOException.class, () -> CompileProtocol.readRequest(
+                input("x".repeat(CompileProtocol.MAX_LINE + 1) + "\n0\n")));
+        assertThrows(IllegalArgumentException.class, () -> CompileProtocol.writeRequest(
+                new ByteArrayOutputStream(), "/tmp", new String[]{"a\nb.c"}));
+    }
+}
@@ -0,0 +1,65 @@
+package cn.deepmax.jfx;
+
+import cn.deepmax.jfx.lexer.LexerException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompileServerTest {
+
+    private static CompileProtocol.Response compile(Path socket, Path workDir, String... args) throws Exception {
+        //the server binds on its own thread, retry until the socket accepts
+        for (int attempt = 0; ; attempt++) {
+            try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+                CompileProtocol.writeRequest(Channels.newOutputStream(channel), workDir.toString(), args);
+                return CompileProtocol.readResponse(Channels.newInputStream(channel));
+            } catch (IOException e) {
+                if (attempt == 100) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    @Test
+    void test_lex_over_socket() throws Exception {
+        Path dir = Files.createTempDirectory("writecc");
+        Path socket = dir.resolve("server.sock");
+        Files.writeString(dir.resolve("good.c"), "int main(void) { return 42; }");
+        Files.writeString(dir.resolve("bad.c"), "int main(void) { return @; }");
+        CompileServer server = new CompileServer(socket);
+        Thread serving = Thread.ofVirtual().start(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        try {
+            //source paths are relative to the client's directory
+            assertEquals(new CompileProtocol.Response(0, ""), compile(socket, dir, "--lex", "good.c"));
+
+            CompileProtocol.Response bad = compile(socket, dir, "--lex", "bad.c");
+            assertEquals(1, bad.exitCode());
+            assertTrue(bad.message().startsWith(LexerException.class.getName()), bad.message());
+            assertTrue(bad.message().contains("invalid token @"), bad.message());
+        } finally {
+            server.close();
+            serving.join();
+            Files.deleteIfExists(dir.resolve("good.c"));
+            Files.deleteIfExists(dir.resolve("bad.c"));
+            Files.delete(dir);
+        }
+        assertFalse(Files.exists(socket));
+    }
+}
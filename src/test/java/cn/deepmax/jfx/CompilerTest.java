@@ -0,0 +1,83 @@
+package cn.deepmax.jfx;
+
+import cn.deepmax.jfx.parse.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerTest {
+
+    private static final String SOURCE = """
+            int twice(int a) { return a * 2; }
+            int main(void) { return twice(21); }
+            """;
+
+    @Test
+    void test_stages() {
+        CompileResult lex = Compiler.compileNow(SOURCE, CompileOptions.until(CompileOptions.Stage.LEX));
+        assertEquals(27, lex.tokens().size());
+        assertNull(lex.ast());
+
+        CompileResult tacky = Compiler.compileNow(SOURCE, CompileOptions.until(CompileOptions.Stage.TACKY));
+        assertEquals(2, tacky.ast().functionDeclarations().size());
+        assertNotNull(tacky.ir());
+        assertNull(tacky.asm());
+        assertNull(tacky.assembly());
+
+        CompileResult all = Compiler.compileNow(SOURCE, CompileOptions.ALL);
+        assertNotNull(all.asm());
+        assertTrue(all.assembly().contains("call\ttwice"), all.assembly());
+    }
+
+    @Test
+    void test_async() {
+        String expect = Compiler.compileNow(SOURCE, CompileOptions.ALL).assembly();
+        List<CompletableFuture<CompileResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(Compiler.virtualThreads().compile(SOURCE, CompileOptions.ALL));
+        }
+        try (ExecutorService pool = Executors.newFixedThreadPool(3)) {
+            Compiler compiler = new Compiler(pool);
+            for (int i = 0; i < 100; i++) {
+                futures.add(compiler.compile(SOURCE, CompileOptions.ALL));
+            }
+            for (CompletableFuture<CompileResult> f : futures) {
+                assertEquals(expect, f.join().assembly());
+            }
+        }
+    }
+
+    @Test
+    void test_error() {
+        CompletableFuture<CompileResult> f = Compiler.virtualThreads().compile("int main(void) { return 1 }", CompileOptions.ALL);
+        CompletionException ex = assertThrows(CompletionException.class, f::join);
+        assertInstanceOf(ParseException.class, ex.getCause());
+    }
+
+    @Test
+    void test_stage_flags() {
+        assertEquals(CompileOptions.Stage.VALIDATE, CompileOptions.Stage.ofFlag("--validate"));
+        assertEquals(CompileOptions.Stage.EMIT, CompileOptions.Stage.ofFlag(""));
+        assertEquals(CompileOptions.Stage.EMIT, CompileOptions.Stage.ofFlag("-S"));
+
+        assertEquals(Set.of(CompileOptions.Optimization.FOLD_CONSTANTS),
+                CompileOptions.Optimization.ofFlag("--fold-constants"));
+        assertEquals(EnumSet.allOf(CompileOptions.Optimization.class), CompileOptions.Optimization.ofFlag("--optimize"));
+        assertTrue(CompileOptions.Optimization.ofFlag("--tacky").isEmpty());
+
+        App.Args args = new App.Args(new String[]{"-c", "--tacky", "--fold-constants", "a.c"});
+        assertTrue(args.toC);
+        assertEquals("--tacky", args.param);
+        assertEquals("a.c", args.path);
+        assertEquals(Set.of(CompileOptions.Optimization.FOLD_CONSTANTS), args.optimizations);
+    }
+}
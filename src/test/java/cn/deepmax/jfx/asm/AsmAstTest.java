@@ -19,4 +19,32 @@ class AsmAstTest {
         assertEquals(AsmAst.get16AlignedStack(8),32);
         assertEquals(AsmAst.get16AlignedStack(9),48);
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_pseudo_slots_per_function() {
+        Asm.PseudoContext pseudos = new Asm.PseudoContext(2);
+        pseudos.reset();
+        assertEquals(0, pseudos.make(7).slot());
+        assertEquals(1, pseudos.make(3).slot());
+        assertEquals(0, pseudos.make(7).slot());
+        assertEquals(2, pseudos.getPseudoCount());
+        assertEquals(8, pseudos.make(3).getOffset());
+
+        pseudos.reset();
+        assertEquals(0, pseudos.make(3).slot());
+        assertEquals(1, pseudos.getPseudoCount());
+    }
+
+    @Test
+    void test_pseudo_shared_by_slot() {
+        Asm.PseudoContext pseudos = new Asm.PseudoContext(40);
+        pseudos.reset();
+        Asm.Pseudo first = pseudos.make(5);
+        assertSame(first, pseudos.make(5));
+        for (int i = 10; i < 40; i++) {
+            pseudos.make(i);
+        }
+        pseudos.reset();
+        assertSame(first, pseudos.make(30));
+    }
+}
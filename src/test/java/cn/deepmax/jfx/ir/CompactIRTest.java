@@ -0,0 +1,80 @@
+package cn.deepmax.jfx.ir;
+
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.lexer.Lexer;
+import cn.deepmax.jfx.parse.Annotations;
+import cn.deepmax.jfx.parse.Ast;
+import cn.deepmax.jfx.parse.Parser;
+import cn.deepmax.jfx.parse.SemanticAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactIRTest {
+
+    private static IR.Program tacky(String source) {
+        CompilationContext context = new CompilationContext();
+        Ast.AstProgram ast = new Parser(new Lexer(source).tokenBuffer(), context).parseProgram();
+        Annotations annotations = new SemanticAnalyzer(context).analyzeProgram(ast);
+        return new IRConverter(ast, context, annotations).convertToIR();
+    }
+
+    @Test
+    void test_operands() {
+        for (int v : new int[]{0, 1, -1, 42, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            long c = CompactIR.ofConstant(v);
+            assertFalse(CompactIR.isVar(c));
+            assertEquals(v, CompactIR.constant(c));
+        }
+        long var = CompactIR.ofVar(1234);
+        assertTrue(CompactIR.isVar(var));
+        assertEquals(1234, CompactIR.symbol(var));
+    }
+
+    @Test
+    void test_round_trip() {
+        IR.Program program = tacky("""
+                int f(int a, int b, int c, int d, int e, int g, int h) { return a + h; }
+                int main(void) {
+                    int x = -2147483647 - 1;
+                    for (int i = 0; i < 10; i = i + 1) {
+                        if (i % 2 == 0 && !x) continue;
+                        x = x ? ~i : f(1, 2, 3, 4, 5, 6, i) / 3;
+                    }
+                    do x = x - 1; while (x > 0 || x < -5);
+                    return x;
+                }
+                """);
+        List<CompactIR> packed = CompactIR.encode(program);
+        assertEquals(2, packed.size());
+        assertEquals(program, CompactIR.decode(packed));
+
+        //decoded operands are interned per function
+        List<IR.Instruction> body = packed.get(0).decode().body();
+        IRType.Binary add = (IRType.Binary) body.get(0);
+        IRType.Return ret = (IRType.Return) body.get(1);
+        assertSame(add.dst(), ret.value());
+        assertSame(add.src1(), ((IRType.Binary) packed.get(0).decode().body().get(0)).src1());
+    }
+
+    @Test
+    void test_rewrite_and_compact() {
+        CompactIR ir = new CompactIR("f", new int[]{0});
+        int exit = ir.labelOf("exit");
+        assertEquals(exit, ir.labelOf("exit"));
+        ir.addBinary(IRType.BinaryOp.Add, CompactIR.ofConstant(1), CompactIR.ofConstant(2), CompactIR.ofVar(1));
+        ir.addJump(exit);
+        ir.addLabel(exit);
+        ir.addReturn(CompactIR.ofVar(1));
+
+        ir.setCopy(0, CompactIR.ofConstant(3), CompactIR.ofVar(1));
+        ir.setNop(1);
+        ir.compact();
+        assertEquals(new IRType.FunctionDef("f", List.of(0), List.of(
+                new IRType.Copy(new IRType.Constant(3), new IRType.Var(1)),
+                new IRType.Label("exit"),
+                new IRType.Return(new IRType.Var(1)))), ir.decode());
+    }
+}
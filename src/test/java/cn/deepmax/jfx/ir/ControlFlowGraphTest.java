@@ -0,0 +1,91 @@
+package cn.deepmax.jfx.ir;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControlFlowGraphTest {
+
+    private static List<Integer> successors(ControlFlowGraph cfg, int block) {
+        List<Integer> result = new ArrayList<>();
+        for (int k = 0; k < cfg.successorCount(block); k++) {
+            result.add(cfg.successor(block, k));
+        }
+        return result;
+    }
+
+    private static List<Integer> predecessors(ControlFlowGraph cfg, int node) {
+        List<Integer> result = new ArrayList<>();
+        for (int k = 0; k < cfg.predecessorCount(node); k++) {
+            result.add(cfg.predecessor(node, k));
+        }
+        return result;
+    }
+
+    @Test
+    void test_blocks_and_edges() {
+        IRType.Var x = new IRType.Var(0);
+        IRType.Var t = new IRType.Var(1);
+        IRType.FunctionDef f = new IRType.FunctionDef("main", List.of(), List.of(
+                new IRType.Copy(new IRType.Constant(0), x),
+                new IRType.Label("loop"),
+                new IRType.Binary(IRType.BinaryOp.LessThan, x, new IRType.Constant(10), t),
+                new IRType.JumpIfZero(t, "end"),
+                new IRType.Binary(IRType.BinaryOp.Add, x, new IRType.Constant(1), x),
+                new IRType.Jump("loop"),
+                new IRType.Return(new IRType.Constant(1)),
+                new IRType.Label("end"),
+                new IRType.Return(x),
+                new IRType.Return(new IRType.Constant(0))));
+        ControlFlowGraph cfg = ControlFlowGraph.build(f);
+
+        assertEquals(6, cfg.blockCount());
+        assertEquals(6, cfg.exit());
+        int[][] ranges = {{0, 1}, {1, 4}, {4, 6}, {6, 7}, {7, 9}, {9, 10}};
+        for (int b = 0; b < ranges.length; b++) {
+            assertEquals(ranges[b][0], cfg.start(b));
+            assertEquals(ranges[b][1], cfg.end(b));
+        }
+        assertEquals(List.of(1), successors(cfg, 0));
+        assertEquals(List.of(2, 4), successors(cfg, 1));
+        assertEquals(List.of(1), successors(cfg, 2));
+        assertEquals(List.of(6), successors(cfg, 3));
+        assertEquals(List.of(6), successors(cfg, 4));
+        assertEquals(List.of(6), successors(cfg, 5));
+
+        assertEquals(List.of(), predecessors(cfg, 0));
+        assertEquals(List.of(0, 2), predecessors(cfg, 1));
+        assertEquals(List.of(), predecessors(cfg, 3));
+        assertEquals(List.of(3, 4, 5), predecessors(cfg, cfg.exit()));
+
+        assertEquals(f.body(), cfg.instructions());
+    }
+
+    @Test
+    void test_conditional_jump_to_next_block() {
+        IRType.Var x = new IRType.Var(0);
+        ControlFlowGraph cfg = ControlFlowGraph.build(new IRType.FunctionDef("f", List.of(0), List.of(
+                new IRType.JumpIfNotZero(x, "next"),
+                new IRType.Label("next"),
+                new IRType.Copy(new IRType.Constant(1), x))));
+        assertEquals(2, cfg.blockCount());
+        assertEquals(List.of(1), successors(cfg, 0));
+        assertEquals(List.of(cfg.exit()), successors(cfg, 1));
+    }
+
+    @Test
+    void test_remove_block() {
+        IRType.FunctionDef f = new IRType.FunctionDef("main", List.of(), List.of(
+                new IRType.Return(new IRType.Constant(1)),
+                new IRType.Return(new IRType.Constant(0))));
+        ControlFlowGraph cfg = ControlFlowGraph.build(f);
+        assertEquals(2, cfg.blockCount());
+        cfg.remove(1);
+        assertEquals(List.of(new IRType.Return(new IRType.Constant(1))), cfg.instructions());
+        cfg.ir().compact();
+        assertEquals(1, ControlFlowGraph.build(cfg.ir()).blockCount());
+    }
+}
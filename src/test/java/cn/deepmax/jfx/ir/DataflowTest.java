@@ -0,0 +1,149 @@
+package cn.deepmax.jfx.ir;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataflowTest {
+
+    private static final IRType.Var X = new IRType.Var(3);
+    private static final IRType.Var T = new IRType.Var(8);
+
+    /**
+     * blocks: 0 x = 0, 1 loop test, 2 x = x + 1, 3 unreachable, 4 return x, 5 unreachable
+     */
+    private static ControlFlowGraph loop() {
+        return ControlFlowGraph.build(new IRType.FunctionDef("main", List.of(), List.of(
+                new IRType.Copy(new IRType.Constant(0), X),
+                new IRType.Label("loop"),
+                new IRType.Binary(IRType.BinaryOp.LessThan, X, new IRType.Constant(10), T),
+                new IRType.JumpIfZero(T, "end"),
+                new IRType.Binary(IRType.BinaryOp.Add, X, new IRType.Constant(1), X),
+                new IRType.Jump("loop"),
+                new IRType.Return(new IRType.Constant(1)),
+                new IRType.Label("end"),
+                new IRType.Return(X),
+                new IRType.Return(new IRType.Constant(0)))));
+    }
+
+    @Test
+    void test_liveness() {
+        ControlFlowGraph cfg = loop();
+        Liveness liveness = Liveness.analyze(cfg);
+        long x = CompactIR.ofVar(X.symbol());
+        long t = CompactIR.ofVar(T.symbol());
+
+        assertFalse(liveness.isLive(liveness.in(0), x));
+        assertTrue(liveness.isLive(liveness.out(0), x));
+        assertTrue(liveness.isLive(liveness.in(1), x));
+        assertFalse(liveness.isLive(liveness.in(1), t));
+        assertTrue(liveness.isLive(liveness.out(2), x));
+        assertFalse(liveness.isLive(liveness.out(4), x));
+        assertFalse(liveness.isLive(liveness.out(1), CompactIR.ofConstant(3)));
+
+        //walk block 1 backwards, t is live between its test and the jump
+        long[] live = liveness.out(1);
+        liveness.transfer(3, live);
+        assertTrue(liveness.isLive(live, t));
+        liveness.transfer(2, live);
+        assertFalse(liveness.isLive(live, t));
+        assertTrue(liveness.isLive(live, x));
+    }
+
+    @Test
+    void test_reaching_definitions() {
+        ControlFlowGraph cfg = loop();
+        ReachingDefinitions reaching = ReachingDefinitions.analyze(cfg);
+        assertEquals(3, reaching.definitionCount());
+        //definitions of x come first, then t
+        assertEquals(0, reaching.definition(0));
+        assertEquals(4, reaching.definition(1));
+        assertEquals(2, reaching.definition(2));
+
+        long[] loopIn = reaching.in(1);
+        assertTrue(reaching.reaches(loopIn, 0));
+        assertTrue(reaching.reaches(loopIn, 2));
+        assertTrue(reaching.reaches(loopIn, 4));
+        assertFalse(reaching.reaches(loopIn, 1));
+        assertFalse(reaching.reaches(reaching.in(0), 0));
+
+        long[] facts = reaching.in(2);
+        reaching.transfer(4, facts);
+        assertFalse(reaching.reaches(facts, 0));
+        assertTrue(reaching.reaches(facts, 4));
+        assertArrayEquals(facts, reaching.out(2));
+    }
+
+    @Test
+    void test_intersection() {
+        ControlFlowGraph cfg = loop();
+        Dataflow flow = new Dataflow(cfg, Dataflow.Direction.FORWARD, Dataflow.Meet.INTERSECTION, 70);
+        long[] bits = new long[flow.words()];
+        Dataflow.set(bits, 0);
+        Dataflow.set(bits, 69);
+        flow.setGen(0, bits);
+        Dataflow.clear(bits, 69);
+        flow.setKill(2, bits);
+        flow.solve();
+
+        //bit 0 is killed around the loop, bit 69 holds on every path
+        long[] in = flow.in(1);
+        assertFalse(Dataflow.get(in, 0));
+        assertTrue(Dataflow.get(in, 69));
+        assertTrue(Dataflow.get(flow.in(4), 69));
+        assertFalse(Dataflow.get(flow.in(0), 69));
+    }
+
+    @Test
+    void test_ranges() {
+        long[] bits = new long[3];
+        Dataflow.setRange(bits, 3, 130);
+        for (int k = 0; k < 192; k++) {
+            assertEquals(k >= 3 && k < 130, Dataflow.get(bits, k), "bit " + k);
+        }
+        Dataflow.clearRange(bits, 60, 64);
+        Dataflow.clearRange(bits, 64, 128);
+        Dataflow.setRange(bits, 5, 5);
+        for (int k = 0; k < 192; k++) {
+            assertEquals(k >= 3 && k < 60 || k >= 128 && k < 130, Dataflow.get(bits, k), "bit " + k);
+        }
+    }
+
+    @Test
+    void test_many_temporaries() {
+        //a chain of 20000 temporaries, each read once by the next one
+        int n = 20000;
+        CompactIR ir = new CompactIR("f", new int[]{0});
+        for (int s = 1; s <= n; s++) {
+            ir.addBinary(IRType.BinaryOp.Add, CompactIR.ofVar(s - 1), CompactIR.ofConstant(1), CompactIR.ofVar(s));
+        }
+        ir.addReturn(CompactIR.ofVar(n));
+        ControlFlowGraph cfg = ControlFlowGraph.build(ir);
+        Liveness liveness = Liveness.analyze(cfg);
+        assertTrue(liveness.isLive(liveness.in(0), CompactIR.ofVar(0)));
+        assertFalse(liveness.isLive(liveness.in(0), CompactIR.ofVar(n)));
+        assertEquals(n, ReachingDefinitions.analyze(cfg).definitionCount());
+    }
+
+    @Test
+    void test_many_definitions() {
+        //x = x + 1 repeated, every definition kills all the others of x
+        int n = 40000;
+        CompactIR ir = new CompactIR("f", new int[]{0});
+        for (int k = 0; k < n; k++) {
+            ir.addBinary(IRType.BinaryOp.Add, CompactIR.ofVar(0), CompactIR.ofConstant(1), CompactIR.ofVar(0));
+        }
+        ir.addReturn(CompactIR.ofVar(0));
+        ControlFlowGraph cfg = ControlFlowGraph.build(ir);
+        ReachingDefinitions reaching = ReachingDefinitions.analyze(cfg);
+        long[] facts = reaching.in(0);
+        for (int i = 0; i < n; i++) {
+            reaching.transfer(i, facts);
+        }
+        assertTrue(reaching.reaches(facts, n - 1));
+        assertFalse(reaching.reaches(facts, n - 2));
+        assertArrayEquals(facts, reaching.out(0));
+    }
+}
@@ -0,0 +1,221 @@
+package cn.deepmax.jfx.ir;
+
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.CompileOptions;
+import cn.deepmax.jfx.lexer.Lexer;
+import cn.deepmax.jfx.parse.Annotations;
+import cn.deepmax.jfx.parse.Ast;
+import cn.deepmax.jfx.parse.Parser;
+import cn.deepmax.jfx.parse.SemanticAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizerTest {
+
+    /**
+     * body of the only function of source, after the optimizations
+     */
+    private static List<IR.Instruction> optimize(String source, Set<CompileOptions.Optimization> optimizations) {
+        CompilationContext context = new CompilationContext();
+        Ast.AstProgram ast = new Parser(new Lexer(source).tokenBuffer(), context).parseProgram();
+        Annotations annotations = new SemanticAnalyzer(context).analyzeProgram(ast);
+        CompactIR f = CompactIR.encode(new IRConverter(ast, context, annotations).convertToIR()).get(0);
+        Optimizer.optimize(f, optimizations);
+        return f.decode().body();
+    }
+
+    private static long count(List<IR.Instruction> body, Class<?> type) {
+        return body.stream().filter(type::isInstance).count();
+    }
+
+    private static <T> T last(List<IR.Instruction> body, Class<T> type) {
+        return body.stream().filter(type::isInstance).map(type::cast).reduce((a, b) -> b).orElseThrow();
+    }
+
+    private static boolean copies(List<IR.Instruction> body, int constant) {
+        return body.stream().anyMatch(i -> i instanceof IRType.Copy c && c.src().equals(new IRType.Constant(constant)));
+    }
+
+    @Test
+    void test_fold_constants() {
+        Set<CompileOptions.Optimization> fold = EnumSet.of(CompileOptions.Optimization.FOLD_CONSTANTS);
+        List<IR.Instruction> body = optimize("int main(void) { return -(1 + 2 * 3) < ~4 || !0; }", fold);
+        assertEquals(0, count(body, IRType.Binary.class));
+        assertEquals(0, count(body, IRType.Unary.class));
+        assertEquals(0, count(body, IRType.JumpIfZero.class) + count(body, IRType.JumpIfNotZero.class));
+        assertTrue(copies(body, -7), body.toString());
+
+        body = optimize("int main(void) { return 2147483647 + 1 == -2147483647 - 1; }", fold);
+        assertEquals(0, count(body, IRType.Binary.class));
+        assertTrue(copies(body, 1), body.toString());
+    }
+
+    @Test
+    void test_fold_keeps_traps() {
+        Set<CompileOptions.Optimization> fold = EnumSet.of(CompileOptions.Optimization.FOLD_CONSTANTS);
+        assertEquals(1, count(optimize("int main(void) { return 1 / 0; }", fold), IRType.Binary.class));
+        assertEquals(1, count(optimize("int main(void) { return 1 % 0; }", fold), IRType.Binary.class));
+        assertEquals(1, count(optimize("int main(void) { return (-2147483647 - 1) / -1; }", fold),
+                IRType.Binary.class));
+        assertEquals(0, count(optimize("int main(void) { return 7 % -2; }", fold), IRType.Binary.class));
+    }
+
+    @Test
+    void test_fold_jumps() {
+        Set<CompileOptions.Optimization> fold = EnumSet.of(CompileOptions.Optimization.FOLD_CONSTANTS);
+        List<IR.Instruction> body = optimize("int main(void) { if (0) return 1; while (1) return 2; }", fold);
+        assertEquals(0, count(body, IRType.JumpIfZero.class));
+        assertEquals(2, count(body, IRType.Jump.class));
+    }
+
+    @Test
+    void test_eliminate_unreachable_code() {
+        Set<CompileOptions.Optimization> unreachable = EnumSet.of(CompileOptions.Optimization.ELIMINATE_UNREACHABLE_CODE);
+        assertEquals(List.of(new IRType.Return(new IRType.Constant(1))),
+                optimize("int main(void) { return 1; }", unreachable));
+
+        //the jump over the else branch and its label go, the return 0 after both returns too
+        List<IR.Instruction> body = optimize("""
+                int main(void) {
+                    int a = 3;
+                    if (a) return 1; else return 2;
+                }""", unreachable);
+        assertEquals(0, count(body, IRType.Jump.class));
+        assertEquals(1, count(body, IRType.JumpIfZero.class));
+        assertEquals(1, count(body, IRType.Label.class));
+        assertEquals(2, count(body, IRType.Return.class));
+
+        //an empty loop keeps its back jump
+        body = optimize("int main(void) { int i = 0; while (i < 3) i = i + 1; return i; }", unreachable);
+        assertEquals(1, count(body, IRType.Jump.class));
+    }
+
+    @Test
+    void test_eliminate_jumps_over_empty_blocks() {
+        String source = """
+                int target(int x, int y) {
+                    if (x) {
+                        if (y) {
+                        }
+                    }
+                    return 1;
+                }""";
+        for (Set<CompileOptions.Optimization> optimizations : List.of(
+                EnumSet.of(CompileOptions.Optimization.ELIMINATE_UNREACHABLE_CODE),
+                EnumSet.allOf(CompileOptions.Optimization.class))) {
+            List<IR.Instruction> body = optimize(source, optimizations);
+            assertEquals(0, count(body, IRType.Jump.class), body.toString());
+            assertEquals(0, count(body, IRType.JumpIfZero.class), body.toString());
+            assertEquals(0, count(body, IRType.Label.class), body.toString());
+        }
+    }
+
+    @Test
+    void test_fold_then_eliminate() {
+        List<IR.Instruction> body = optimize("int main(void) { if (1 > 2) return 1; return 2; }", EnumSet.of(
+                CompileOptions.Optimization.FOLD_CONSTANTS, CompileOptions.Optimization.ELIMINATE_UNREACHABLE_CODE));
+        assertEquals(List.of(new IRType.Return(new IRType.Constant(2))), body.stream()
+                .filter(i -> !(i instanceof IRType.Copy)).toList());
+    }
+
+    @Test
+    void test_propagate_copies() {
+        Set<CompileOptions.Optimization> copies = EnumSet.of(CompileOptions.Optimization.PROPAGATE_COPIES);
+        List<IR.Instruction> body = optimize("""
+                int main(void) {
+                    int a = 3;
+                    int b = a;
+                    return b * 2;
+                }""", copies);
+        IRType.Binary multiply = last(body, IRType.Binary.class);
+        assertEquals(new IRType.Constant(3), multiply.src1());
+
+        //x is copied on one path only, so its reads keep the var
+        body = optimize("""
+                int main(void) {
+                    int x = 1;
+                    int y = 5;
+                    if (y > 2) x = y;
+                    return x + 1;
+                }""", copies);
+        IRType.Binary add = last(body, IRType.Binary.class);
+        assertInstanceOf(IRType.Var.class, add.src1(), body.toString());
+
+        //the copy in the loop body is killed by the update of i
+        body = optimize("""
+                int main(void) {
+                    int s = 0;
+                    for (int i = 0; i < 10; i = i + 1) s = i;
+                    return s;
+                }""", copies);
+        assertInstanceOf(IRType.Var.class, body.stream().filter(IRType.Return.class::isInstance)
+                .map(i -> ((IRType.Return) i).value()).findFirst().get(), body.toString());
+    }
+
+    @Test
+    void test_propagate_same_copy_on_both_paths() {
+        List<IR.Instruction> body = optimize("""
+                int target(int flag) {
+                    int x = 0;
+                    if (flag) {
+                        x = 3;
+                    } else {
+                        x = 3;
+                    }
+                    return x;
+                }""", EnumSet.of(CompileOptions.Optimization.PROPAGATE_COPIES));
+        assertEquals(new IRType.Return(new IRType.Constant(3)), body.stream().filter(IRType.Return.class::isInstance)
+                .findFirst().get(), body.toString());
+    }
+
+    @Test
+    void test_propagate_long_function() {
+        //every x = x + 1 kills the copies into and from x
+        String source = "int main(void) { int x = 0; int y = 0;" + " x = x + 1; y = x;".repeat(40000) + " return y; }";
+        List<IR.Instruction> body = optimize(source, EnumSet.of(CompileOptions.Optimization.PROPAGATE_COPIES,
+                CompileOptions.Optimization.ELIMINATE_DEAD_STORES));
+        assertEquals(40000, count(body, IRType.Binary.class));
+        assertEquals(0, count(body, IRType.Copy.class), body.subList(body.size() - 3, body.size()).toString());
+    }
+
+    @Test
+    void test_eliminate_dead_stores() {
+        Set<CompileOptions.Optimization> dead = EnumSet.of(CompileOptions.Optimization.ELIMINATE_DEAD_STORES);
+        List<IR.Instruction> body = optimize("""
+                int f(void);
+                int main(void) {
+                    int a = 1;
+                    a + 2;
+                    f();
+                    a = 5;
+                    return a;
+                }""", dead);
+        assertEquals(0, count(body, IRType.Binary.class), body.toString());
+        assertEquals(1, count(body, IRType.FunCall.class));
+        assertEquals(1, count(body, IRType.Copy.class));
+
+        //a store read by the next loop iteration stays
+        body = optimize("int main(void) { int i = 0; while (i < 3) i = i + 1; return 0; }", dead);
+        assertEquals(2, count(body, IRType.Binary.class), body.toString());
+    }
+
+    @Test
+    void test_optimize_all() {
+        Set<CompileOptions.Optimization> all = EnumSet.allOf(CompileOptions.Optimization.class);
+        List<IR.Instruction> body = optimize("""
+                int main(void) {
+                    int a = 3;
+                    int b = a * 4 + 1;
+                    if (b > 10) return b; else return 0;
+                }""", all);
+        assertEquals(new IRType.Return(new IRType.Constant(13)), body.get(body.size() - 1), body.toString());
+        assertEquals(0, count(body, IRType.Binary.class));
+        assertEquals(0, count(body, IRType.JumpIfZero.class));
+        assertEquals(List.of(new IRType.Return(new IRType.Constant(13))), body);
+    }
+}
@@ -0,0 +1,158 @@
+package cn.deepmax.jfx.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LexerTest {
+
+    private static List<Token> tokensOf(String input) {
+        return new Lexer(input).tokenList();
+    }
+
+    @Test
+    void test_keywords_and_ids() {
+        List<Token> tokens = tokensOf("int integer in fort for continue_ return void");
+        assertSame(Keyword.INT.token, tokens.get(0));
+        assertEquals("Id[integer]", tokens.get(1).toString());
+        assertEquals("Id[in]", tokens.get(2).toString());
+        assertEquals("Id[fort]", tokens.get(3).toString());
+        assertTrue(tokens.get(4).isKeyword(Keyword.FOR));
+        assertEquals("Id[continue_]", tokens.get(5).toString());
+        assertTrue(tokens.get(6).isKeyword("return"));
+        assertTrue(tokens.get(7).isKeyword(Keyword.VOID));
+        assertSame(TokenType.EOF, tokens.get(8));
+    }
+
+    @Test
+    void test_all_keywords() {
+        for (Keyword k : Keyword.values()) {
+            ByteBuffer bytes = ByteBuffer.wrap((" " + k.value + " ").getBytes());
+            assertSame(k, Keyword.lookup(bytes, 1, k.value.length()));
+        }
+    }
+
+    @Test
+    void test_constants_and_symbols() {
+        List<Token> tokens = tokensOf("x=2147483647;y<=-10");
+        assertEquals(List.of("Id[x]", "[=]", "Constant[2147483647]", "[;]", "Id[y]", "[<=]", "[-]", "Constant[10]", "EOF"),
+                tokens.stream().map(Object::toString).toList());
+    }
+
+    @Test
+    void test_invalid_tokens() {
+        assertThrows(LexerException.class, () -> tokensOf("int 1foo;"));
+        assertThrows(LexerException.class, () -> tokensOf("int a@b;"));
+        assertThrows(LexerException.class, () -> tokensOf("return 2147483648;"));
+        assertThrows(LexerException.class, () -> tokensOf("a & b"));
+    }
+
+    @Test
+    void test_line_numbers() {
+        TokenBuffer buffer = new Lexer("a\n\nb /* x\n\n */ c // d\n\te").tokenBuffer();
+        assertEquals("[Id[a], Id[b], Id[c], Id[e], EOF]", buffer.toString());
+        assertEquals(1, buffer.line(0));
+        assertEquals(3, buffer.line(1));
+        assertEquals(5, buffer.line(2));
+        assertEquals(6, buffer.line(3));
+    }
+
+    @Test
+    void test_mapped_file() throws Exception {
+        Path file = Files.createTempFile("lexer", ".c");
+        try {
+            Files.writeString(file, "int main(void) {\n  return 42;\n}");
+            TokenBuffer mapped = Lexer.ofFile(file).tokenBuffer();
+            assertEquals(new Lexer(Files.readString(file)).tokenBuffer().toString(), mapped.toString());
+            assertEquals(42, mapped.constantValue(7));
+            assertEquals(3, mapped.line(9));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void test_comments() {
+        assertEquals("[Id[a], [/], Id[b], EOF]", tokensOf("a/**/ / b//").toString());
+        assertThrows(LexerException.class, () -> tokensOf("a /* b"));
+    }
+
+    @Test
+    void test_token_buffer() {
+        TokenBuffer buffer = new Lexer("int main(void) {\n  return 42;\n}").tokenBuffer();
+        assertEquals("[Keyword[int], Id[main], [(], Keyword[void], [)], [{], Keyword[return], Constant[42], [;], [}], EOF]",
+                buffer.toString());
+        assertTrue(buffer.isKeyword(6, Keyword.RETURN));
+        assertSame(Keyword.VOID, buffer.keyword(3));
+        assertNull(buffer.keyword(1));
+        assertEquals(42, buffer.constantValue(7));
+        assertEquals("main", buffer.text(1));
+        assertEquals(4, buffer.start(1));
+        assertEquals(2, buffer.line(6));
+        assertEquals(3, buffer.line(9));
+    }
+
+    @Test
+    void test_parallel_chunks() {
+        String src = """
+                int main(void) {
+                    /* a comment
+                       over lines ; int x = 1;
+                    */
+                    int a = 2 */* open again
+                    // still inside */ int b = a * 3;
+                    // line comment /* does not open
+                    return a / b;
+                }
+                /*/ not closed here
+                */ int c(void) { return 1; }
+                """.repeat(20);
+        ByteBuffer data = ByteBuffer.wrap(src.getBytes());
+        TokenBuffer expect = new Lexer(data).tokenBuffer();
+        for (int chunk : new int[]{1, 7, 16, 64, 1000}) {
+            TokenBuffer actual = ParallelLexer.lex(data, ForkJoinPool.commonPool(), chunk);
+            assertEquals(expect.toString(), actual.toString());
+            assertEquals(expect.lineTable().lineCount(), actual.lineTable().lineCount());
+            for (int i = 0; i < expect.size(); i++) {
+                assertEquals(expect.start(i), actual.start(i));
+                assertEquals(expect.line(i), actual.line(i));
+            }
+        }
+        LexerException e = assertThrows(LexerException.class,
+                () -> ParallelLexer.lex(ByteBuffer.wrap((src + "int x;\n/* open\nint y;\n").getBytes()),
+                        ForkJoinPool.commonPool(), 16));
+        assertTrue(e.getMessage().contains("unterminated comment"));
+    }
+
+    @Test
+    void test_vector_trivia() {
+        //both paths are picked explicitly below, the vector one needs the module at runtime
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "run with --add-modules jdk.incubator.vector");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append(" ".repeat(i % 70)).append("int a").append(i).append(" =\t\r\n").append(i).append(";");
+            sb.append("/*").append("*".repeat(i % 67)).append("\n".repeat(i % 3)).append(" x/ ").append("*/");
+            sb.append("//").append("-".repeat(i % 80)).append("/*\n");
+        }
+        byte[] bytes = sb.append("*/*/").toString().getBytes();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        for (ByteBuffer data : new ByteBuffer[]{ByteBuffer.wrap(bytes), direct}) {
+            TokenBuffer scalar = new Lexer(data, 0, data.limit(), false, false).tokenBuffer();
+            TokenBuffer vector = new Lexer(data, 0, data.limit(), false, true).tokenBuffer();
+            assertEquals(scalar.toString(), vector.toString());
+            assertEquals(scalar.lineTable().lineCount(), vector.lineTable().lineCount());
+            for (int i = 0; i < scalar.size(); i++) {
+                assertEquals(scalar.start(i), vector.start(i));
+                assertEquals(scalar.line(i), vector.line(i));
+            }
+        }
+    }
+}
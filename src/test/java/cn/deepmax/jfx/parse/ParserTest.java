@@ -0,0 +1,91 @@
+package cn.deepmax.jfx.parse;
+
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.lexer.Lexer;
+import cn.deepmax.jfx.lexer.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserTest {
+
+    private static AstNode.Exp parse(String exp) {
+        return new Parser(new Lexer(exp)).parseExp(0);
+    }
+
+    @Test
+    void test_precedence_and_associativity() {
+        assertEquals("Binary[operator=Subtract, left=Binary[operator=Subtract, left=Var[identifier=a], right=Var[identifier=b]], right=Binary[operator=Multiply, left=Var[identifier=c], right=Var[identifier=d]]]",
+                parse("a - b - c * d").toString());
+        assertEquals("Assignment[left=Var[identifier=a], right=Assignment[left=Var[identifier=b], right=Conditional[condition=Var[identifier=c], trueExp=Var[identifier=d], falseExp=Conditional[condition=Var[identifier=e], trueExp=Var[identifier=f], falseExp=Var[identifier=g]]]]]",
+                parse("a = b = c ? d : e ? f : g").toString());
+        assertEquals("Binary[operator=Or, left=Var[identifier=a], right=Binary[operator=And, left=Var[identifier=b], right=Binary[operator=Equal, left=Var[identifier=c], right=Binary[operator=LessThan, left=Var[identifier=d], right=Var[identifier=e]]]]]",
+                parse("a || b && c == d < e").toString());
+    }
+
+    @Test
+    void test_factors() {
+        assertEquals("Var[identifier=a]", parse("(((a)))").toString());
+        assertEquals("FactorExp[factor=Unary[operator=Negate, factor=Unary[operator=Not, factor=ExpFactor[exp=Binary[operator=Add, left=Var[identifier=a], right=FactorExp[factor=IntConstantFactor[value=1]]]]]]]",
+                parse("-!(a + 1)").toString());
+        assertEquals("FactorExp[factor=FunctionCall[identifier=f, args=[Var[identifier=a], FactorExp[factor=FunctionCall[identifier=g, args=[]]], Binary[operator=Add, left=Var[identifier=b], right=Var[identifier=c]]]]]",
+                parse("f(a, g(), b + c)").toString());
+    }
+
+    @Test
+    void test_errors() {
+        ParseException ex = assertThrows(ParseException.class, () -> parse("a ? b"));
+        assertTrue(ex.getMessage().startsWith("Expect COLON,but get EOF"), ex.getMessage());
+        ex = assertThrows(ParseException.class, () -> parse("f(a, (b)"));
+        assertTrue(ex.getMessage().startsWith("Malformed factor:EOF"), ex.getMessage());
+    }
+
+    @Test
+    void test_deep_nesting() {
+        int n = 50_000;
+        AstNode.Exp sum = parse("1" + " + 1".repeat(n));
+        int depth = 0;
+        while (sum instanceof Ast.Binary b) {
+            assertInstanceOf(Ast.FactorExp.class, b.right());
+            sum = b.left();
+            depth++;
+        }
+        assertEquals(n, depth);
+
+        AstNode.Exp nested = parse("(".repeat(n) + "a" + " = -(b)" + ")".repeat(n));
+        assertInstanceOf(Ast.Assignment.class, nested);
+
+        AstNode.Exp right = parse("a" + " = a".repeat(n));
+        depth = 0;
+        while (right instanceof Ast.Assignment as) {
+            right = as.right();
+            depth++;
+        }
+        assertEquals(n, depth);
+    }
+
+    @Test
+    void test_parallel_functions() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("int f").append(i).append("(int a, int b);\n");
+            sb.append("int f").append(i).append("(int a, int b) { if (a) { return b; } { int c = f(a, b); } return a ? b : ").append(i).append("; }\n");
+        }
+        String src = sb.toString();
+        TokenBuffer tokens = new Lexer(src).tokenBuffer();
+        String expect = new Parser(tokens).parseProgram().toString();
+        for (int batches : new int[]{1, 3, 64, 1000}) {
+            List<Ast.FunctionDeclare> funcs = ParallelParser.parse(tokens, new CompilationContext(), ForkJoinPool.commonPool(), batches);
+            assertNotNull(funcs);
+            assertEquals(expect, new Ast.AstProgram(funcs).toString());
+        }
+
+        TokenBuffer broken = new Lexer(src + "int g(void) { return 1 }\n" + src).tokenBuffer();
+        assertNull(ParallelParser.parse(broken, new CompilationContext(), ForkJoinPool.commonPool(), 8));
+        assertNull(ParallelParser.parse(new Lexer(src + "}").tokenBuffer(), new CompilationContext(), ForkJoinPool.commonPool(), 8));
+        assertNull(ParallelParser.parse(new Lexer(src + "int g(void) {").tokenBuffer(), new CompilationContext(), ForkJoinPool.commonPool(), 8));
+    }
+}
@@ -0,0 +1,136 @@
+package cn.deepmax.jfx.parse;
+
+import cn.deepmax.jfx.CompilationContext;
+import cn.deepmax.jfx.exception.SemanticException;
+import cn.deepmax.jfx.ir.IRConverter;
+import cn.deepmax.jfx.lexer.Lexer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * differential test of the fused pass against Resolver + TypeChecker on the book's test programs, chapters 1 to 9
+ */
+class SemanticAnalyzerTest {
+
+    private static final Path TESTS = Path.of("writing-a-c-compiler-tests", "tests");
+    private static final int LAST_CHAPTER = 9;
+
+    private static String reference(String source) {
+        CompilationContext context = new CompilationContext();
+        Parser p = new Parser(new Lexer(source).tokenBuffer(), context);
+        Ast.AstProgram ast = p.parseProgram();
+        Annotations annotations = p.resolver.annotateProgram(ast);
+        new TypeChecker(context, annotations).checkProgram(ast);
+        return new IRConverter(ast, context, annotations).convertToIR().toString();
+    }
+
+    private static String fused(String source) {
+        CompilationContext context = new CompilationContext();
+        Ast.AstProgram ast = new Parser(new Lexer(source).tokenBuffer(), context).parseProgram();
+        Annotations annotations = new SemanticAnalyzer(context).analyzeProgram(ast);
+        return new IRConverter(ast, context, annotations).convertToIR().toString();
+    }
+
+    private static List<Path> programs(String kind) throws IOException {
+        try (Stream<Path> files = Files.walk(TESTS)) {
+            return files.filter(f -> f.toString().endsWith(".c"))
+                    .filter(f -> chapter(f) <= LAST_CHAPTER)
+                    .filter(f -> f.getParent().getFileName().toString().startsWith(kind)
+                            || f.getParent().getParent().getFileName().toString().startsWith(kind))
+                    .filter(f -> !f.toString().contains("extra_credit"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int chapter(Path f) {
+        String dir = TESTS.relativize(f).getName(0).toString();
+        return Integer.parseInt(dir.substring("chapter_".length()));
+    }
+
+    @Test
+    void test_valid_programs_lower_the_same() throws IOException {
+        List<Path> valid = programs("valid");
+        assertFalse(valid.isEmpty());
+        for (Path f : valid) {
+            String source = Files.readString(f);
+            assertEquals(reference(source), fused(source), f.toString());
+        }
+    }
+
+    @Test
+    void test_invalid_programs_fail_the_same() throws IOException {
+        for (String kind : List.of("invalid_semantics", "invalid_declarations", "invalid_labels", "invalid_types")) {
+            for (Path f : programs(kind)) {
+                String source = Files.readString(f);
+                var expect = assertThrows(RuntimeException.class, () -> reference(source), f.toString());
+                var actual = assertThrows(RuntimeException.class, () -> fused(source), f.toString());
+                assertEquals(expect.getClass(), actual.getClass(), f.toString());
+            }
+        }
+    }
+
+    private static String parallel(String source, int batches) {
+        CompilationContext context = new CompilationContext();
+        Ast.AstProgram ast = new Parser(new Lexer(source).tokenBuffer(), context).parseProgram();
+        Annotations annotations = ParallelSemanticAnalyzer.analyze(ast, context, context.symbolTable(), ForkJoinPool.commonPool(), batches);
+        return annotations == null ? null : new IRConverter(ast, context, annotations).convertToIR().toString();
+    }
+
+    private static String functions(int n) {
+        StringBuilder sb = new StringBuilder("int f0(int a);\n");
+        for (int i = 1; i < n; i++) {
+            sb.append("""
+                    int f%d(int a) {
+                        int b = a;
+                        for (int i = 0; i < a; i = i + 1) {
+                            int f%d(int x);
+                            while (b > 10) { b = b - f%d(i); if (b) break; }
+                            do { int a = b; b = a - 1; continue; } while (b > 100);
+                        }
+                        return b + f0(a);
+                    }
+                    """.formatted(i, i - 1, i - 1));
+        }
+        return sb.append("int f0(int a) { return a; }\n").toString();
+    }
+
+    @Test
+    void test_parallel_batches_match_sequential() {
+        String source = functions(40);
+        String expect = fused(source);
+        for (int batches : List.of(2, 3, 7, 40)) {
+            assertEquals(expect, parallel(source, batches), "batches " + batches);
+        }
+
+        String large = functions(ParallelSemanticAnalyzer.MIN_FUNCTIONS + 1);
+        CompilationContext context = new CompilationContext();
+        Ast.AstProgram ast = new Parser(new Lexer(large).tokenBuffer(), context).parseProgram();
+        Annotations annotations = new SemanticAnalyzer(context).analyzeProgram(ast, ForkJoinPool.commonPool());
+        assertEquals(fused(large), new IRConverter(ast, context, annotations).convertToIR().toString());
+    }
+
+    @Test
+    void test_parallel_falls_back_on_errors() {
+        assertNull(parallel(functions(10) + "int f3(void);", 4));
+        assertNull(parallel(functions(10) + "int g(void) { return h(); }", 4));
+        assertNull(parallel("int main(void) { int g(int a); return 0; } int g(void);", 2));
+        String hidden = "int main(void) { int g(void); return 0; } int k(void) { return g(); }";
+        assertNull(parallel(hidden, 2));
+        assertDoesNotThrow(() -> fused(hidden));
+    }
+
+    @Test
+    void test_loop_bodies_are_checked() {
+        String source = "int f(int a); int main(void) { while (1) { return f(); } return 0; }";
+        assertThrows(SemanticException.class, () -> fused(source));
+    }
+}
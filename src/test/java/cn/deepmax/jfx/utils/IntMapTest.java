@@ -0,0 +1,30 @@
+package cn.deepmax.jfx.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntMapTest {
+
+    @Test
+    void test_put_get_grow() {
+        IntMap<String> map = new IntMap<>();
+        for (int k = -998; k < 1000; k += 3) {
+            map.put(k, "v" + k);
+        }
+        map.put(Integer.MIN_VALUE, "min");
+        map.put(7, "seven");
+        for (int k = -998; k < 1000; k += 3) {
+            assertEquals(k == 7 ? "seven" : "v" + k, map.get(k));
+            assertNull(map.get(k + 1));
+        }
+        assertEquals("min", map.get(Integer.MIN_VALUE));
+        assertEquals(667, map.size());
+
+        String v = map.computeIfAbsent(5, k -> "five");
+        assertSame(v, map.computeIfAbsent(5, k -> "other"));
+        map.clear();
+        assertNull(map.get(5));
+        assertEquals(0, map.size());
+    }
+}